@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021-2024 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Helper for the benchmarks: creates ClassFileTransformer without the agent and reads test class files
+ */
+final class BenchmarkClasses {
+    static final String CONFIG_PROPERTY = "vt.benchmark.config";
+    // Classes from java:test8 module that use Value Types
+    static final String TEST_PACKAGE = "com/epam/deltix/vtype/test/";
+
+    static final class ClassFile {
+        final String name;
+        final byte[] data;
+
+        ClassFile(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private BenchmarkClasses() {}
+
+    static String configPath() {
+
+        String path = System.getProperty(CONFIG_PROPERTY);
+        if (null == path)
+            throw new IllegalStateException("Config file path is not set, use -D" + CONFIG_PROPERTY + "=<path>");
+
+        return path;
+    }
+
+    /**
+     * @return initialized transformer, Value Type classes are scanned as if loaded under the agent
+     */
+    static ClassFileTransformer createTransformer() throws Exception {
+
+        ClassFileTransformer transformer = new ClassFileTransformer(configPath());
+        transformer.readClasses(BenchmarkClasses.class.getClassLoader());
+        return transformer;
+    }
+
+    /**
+     * @return all class files from the specified package (not including subpackages), sorted by name
+     */
+    static List<ClassFile> load(String packagePath) throws IOException {
+
+        ClassLoader loader = BenchmarkClasses.class.getClassLoader();
+        URL url = loader.getResource(packagePath);
+        if (null == url)
+            throw new IOException("Package not found: " + packagePath);
+
+        List<String> names = new ArrayList<>();
+        if ("jar".equals(url.getProtocol())) {
+            JarFile jar = ((JarURLConnection) url.openConnection()).getJarFile();
+            for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements();) {
+                String name = e.nextElement().getName();
+                if (name.startsWith(packagePath) && name.endsWith(".class") && name.indexOf('/', packagePath.length()) < 0) {
+                    names.add(name);
+                }
+            }
+        } else {
+            File[] files = new File(URLDecoder.decode(url.getPath(), "UTF-8")).listFiles();
+            if (null != files) {
+                for (File file : files) {
+                    if (file.getName().endsWith(".class")) {
+                        names.add(packagePath + file.getName());
+                    }
+                }
+            }
+        }
+
+        names.sort(null);
+        List<ClassFile> classes = new ArrayList<>(names.size());
+        for (String name : names) {
+            try (InputStream in = loader.getResourceAsStream(name)) {
+                classes.add(new ClassFile(name.substring(0, name.length() - ".class".length()), OfflineTransformer.readFully(in)));
+            }
+        }
+
+        return classes;
+    }
+}
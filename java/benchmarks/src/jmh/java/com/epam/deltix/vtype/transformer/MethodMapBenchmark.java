@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021-2024 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.MethodDef;
+import com.epam.deltix.vtype.mapping.MethodMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Method lookup cost: MethodMap vs. the former HashMap keyed by combined name and descriptor hash codes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MethodMapBenchmark {
+    @Param({"100", "5000"})
+    public int numMethods;
+
+    private MethodMap methodMap;
+    private HashMap<Integer, MethodDef> hashMap;
+    private String[] names;
+    private String[] descs;
+    private int next;
+
+    private static int combineKeys(String a, String b) {
+        return 0x1B3 * a.hashCode() + b.hashCode();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        methodMap = new MethodMap();
+        hashMap = new HashMap<>();
+        // Every second lookup misses, as for calls to methods that are not Value Type methods
+        names = new String[numMethods * 2];
+        descs = new String[numMethods * 2];
+        for (int i = 0; i < numMethods; ++i) {
+            String name = "method" + i;
+            String desc = "(LValueType;" + (0 != (i & 1) ? "J" : "I") + ")LValueType;";
+            MethodDef m = new MethodDef(name, desc, "a/Util", true, name, desc.replace("LValueType;", "J"), name);
+            String oldDesc = desc.replace("LValueType;", "Ljava/lang/Object;");
+            methodMap.put(m);
+            hashMap.put(combineKeys(name, oldDesc), m);
+            // Lookup strings are not the same instances as the keys, like the ones read by ClassReader
+            names[2 * i] = new String(name);
+            descs[2 * i] = new String(oldDesc);
+            names[2 * i + 1] = "call" + i;
+            descs[2 * i + 1] = oldDesc;
+        }
+
+        for (int i = 0; i < names.length; ++i) {
+            names[i].hashCode();
+            descs[i].hashCode();
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == names.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public MethodDef methodMap() {
+        int i = nextIndex();
+        return methodMap.get(names[i], descs[i]);
+    }
+
+    @Benchmark
+    public MethodDef hashMap() {
+        int i = nextIndex();
+        return hashMap.get(combineKeys(names[i], descs[i]));
+    }
+}
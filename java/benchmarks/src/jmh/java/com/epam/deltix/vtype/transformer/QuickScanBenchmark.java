@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021-2024 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.Mapping;
+import com.epam.deltix.vtype.mapping.MappingReader;
+import org.objectweb.asm.ClassReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rejecting a class that does not use Value Types: QuickScan visitor vs. constant pool pre-scan.
+ * ASM classes are used as typical classes unrelated to Value Types.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuickScanBenchmark {
+    private Mapping mapping;
+    private ConstantPoolScanner scanner;
+    private List<BenchmarkClasses.ClassFile> classes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        mapping = MappingReader.parse(BenchmarkClasses.configPath());
+        scanner = ConstantPoolScanner.forMapping(mapping);
+        classes = BenchmarkClasses.load("org/objectweb/asm/");
+    }
+
+    private byte[] nextClass() {
+        byte[] data = classes.get(next).data;
+        next = (next + 1) % classes.size();
+        return data;
+    }
+
+    @Benchmark
+    public boolean quickScan() {
+        return QuickScanClassVisitor.findVt(new ClassReader(nextClass()), mapping).foundVType();
+    }
+
+    @Benchmark
+    public boolean constantPoolScan() {
+        return scanner.mayReferenceValueTypes(nextClass());
+    }
+}
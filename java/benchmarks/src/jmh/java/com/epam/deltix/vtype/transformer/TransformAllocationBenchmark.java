@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021-2024 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Memory allocated by ClassFileTransformer.transform(), run with the GC profiler:
+ * gradlew :java:value-types-benchmarks:jmh -PjmhInclude=TransformAllocation -PjmhProfilers=gc
+ * gc.alloc.rate.norm is the number of bytes allocated per transformed class.
+ * Stack frame snapshots are reused across methods, so for a method with many branches the allocation mostly comes
+ * from the ASM class reader and writer and grows linearly with the code size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformAllocationBenchmark {
+    private static final String BRANCHY_CLASS = "com/epam/deltix/vtype/bench/BranchyMethod";
+
+    @Param({"100", "1000", "4000"})
+    public int numBranches;
+
+    private ClassFileTransformer transformer;
+    private List<BenchmarkClasses.ClassFile> classes;
+    private byte[] branchyClass;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        transformer = BenchmarkClasses.createTransformer();
+        classes = BenchmarkClasses.load(BenchmarkClasses.TEST_PACKAGE);
+        branchyClass = generateBranchyClass(numBranches);
+    }
+
+    @TearDown(Level.Trial)
+    public void checkFailures() {
+        if (0 != transformer.getNumFailedClasses())
+            throw new IllegalStateException(transformer.getNumFailedClasses() + " classes failed to transform");
+    }
+
+    /**
+     * Class with a single static method that takes a Value Type and has a stack frame after each of its branches
+     */
+    private static byte[] generateBranchyClass(int numBranches) {
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw.visit(V1_8, ACC_PUBLIC, BRANCHY_CLASS, null, "java/lang/Object", null);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "branches", "(Lcom/epam/deltix/dt/DateTime;I)I", null, null);
+        mv.visitCode();
+        for (int i = 0; i < numBranches; ++i) {
+            Label skip = new Label();
+            mv.visitVarInsn(ILOAD, 1);
+            mv.visitLdcInsn(i);
+            mv.visitJumpInsn(IF_ICMPLE, skip);
+            mv.visitIincInsn(1, i & 0x7F);
+            mv.visitLabel(skip);
+        }
+
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESTATIC, "com/epam/deltix/dt/DateTime", "getLong", "(Lcom/epam/deltix/dt/DateTime;)J", false);
+        mv.visitInsn(L2I);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitInsn(IADD);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] transformTestClass() {
+        BenchmarkClasses.ClassFile c = classes.get(next);
+        next = (next + 1) % classes.size();
+        return transformer.transform(BenchmarkClasses.class.getClassLoader(), c.name, null, null, c.data);
+    }
+
+    @Benchmark
+    public byte[] transformBranchyMethod() {
+        return transformer.transform(BenchmarkClasses.class.getClassLoader(), BRANCHY_CLASS, null, null, branchyClass);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021-2024 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of ClassFileTransformer.transform() for unrelated classes, on a single thread and on all cores.
+ * Ideally, the multithreaded score is close to the single thread score multiplied by the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformConcurrencyBenchmark {
+    private ClassFileTransformer transformer;
+    private List<BenchmarkClasses.ClassFile> classes;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        transformer = BenchmarkClasses.createTransformer();
+        classes = BenchmarkClasses.load(BenchmarkClasses.TEST_PACKAGE);
+    }
+
+    @TearDown(Level.Trial)
+    public void checkFailures() {
+        if (0 != transformer.getNumFailedClasses())
+            throw new IllegalStateException(transformer.getNumFailedClasses() + " classes failed to transform");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] transformSingleThread(Cursor cursor) {
+        return transformNext(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] transformAllThreads(Cursor cursor) {
+        return transformNext(cursor);
+    }
+
+    private byte[] transformNext(Cursor cursor) {
+        BenchmarkClasses.ClassFile c = classes.get(cursor.next);
+        cursor.next = (cursor.next + 1) % classes.size();
+        return transformer.transform(BenchmarkClasses.class.getClassLoader(), c.name, null, null, c.data);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021-2024 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.gradle;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+
+/**
+ * Build script configuration block:
+ * <pre>
+ * valueTypes {
+ *     configFile = file('cfg/valuetypes.json')
+ *     sourceSets = ['main', 'test']
+ * }
+ * </pre>
+ */
+public abstract class ValueTypesExtension {
+
+    /**
+     * JSON config, same as passed to the agent. Default: valuetypes.json in the root project directory
+     */
+    public abstract RegularFileProperty getConfigFile();
+
+    /**
+     * Names of the source sets whose classes are transformed. Default: main, test
+     */
+    public abstract ListProperty<String> getSourceSets();
+
+    /**
+     * Number of transformation threads, 0 means all available processors
+     */
+    public abstract Property<Integer> getThreads();
+
+    /**
+     * Fail the build if any class fails to transform. Default: true
+     */
+    public abstract Property<Boolean> getFailOnError();
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021-2024 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.bundling.Jar;
+import org.gradle.api.tasks.testing.Test;
+import org.gradle.language.base.plugins.LifecycleBasePlugin;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Applies Value Type transformation at build time.
+ * <p>
+ * For each configured source set, registers a transformValueTypes task that runs after the compilation and
+ * writes transformed classes to build/classes/valueTypes/&lt;sourceSet&gt;. Compilation still uses the original
+ * classes, while test tasks and the jar use the transformed ones, so no agent is needed at runtime.
+ */
+public class ValueTypesPlugin implements Plugin<Project> {
+    public static final String EXTENSION_NAME = "valueTypes";
+
+    @Override
+    public void apply(final Project project) {
+
+        final ValueTypesExtension extension = project.getExtensions().create(EXTENSION_NAME, ValueTypesExtension.class);
+        extension.getConfigFile().convention(project.getRootProject().getLayout().getProjectDirectory().file("valuetypes.json"));
+        extension.getSourceSets().convention(Arrays.asList(SourceSet.MAIN_SOURCE_SET_NAME, SourceSet.TEST_SOURCE_SET_NAME));
+        extension.getThreads().convention(0);
+        extension.getFailOnError().convention(true);
+
+        project.getPlugins().withType(JavaPlugin.class, plugin -> project.afterEvaluate(p -> configure(p, extension)));
+    }
+
+    private static void configure(Project project, ValueTypesExtension extension) {
+
+        SourceSetContainer sourceSets = project.getExtensions().getByType(SourceSetContainer.class);
+        final Map<SourceSet, TaskProvider<ValueTypesTransformTask>> transforms = new LinkedHashMap<>();
+        for (String name : extension.getSourceSets().get()) {
+            SourceSet sourceSet = sourceSets.getByName(name);
+            transforms.put(sourceSet, registerTransform(project, sourceSet, extension));
+        }
+
+        project.getTasks().withType(Test.class).configureEach(test ->
+                test.setClasspath(replaceClasses(project, test.getClasspath(), transforms)));
+
+        SourceSet main = sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+        final TaskProvider<ValueTypesTransformTask> mainTransform = transforms.get(main);
+        if (null != mainTransform) {
+            final FileCollection originalClasses = main.getOutput().getClassesDirs();
+            project.getTasks().named(JavaPlugin.JAR_TASK_NAME, Jar.class, jar -> {
+                jar.from(mainTransform);
+                jar.eachFile(details -> {
+                    if (isInside(details.getFile(), originalClasses)) {
+                        details.exclude();
+                    }
+                });
+            });
+        }
+    }
+
+    private static TaskProvider<ValueTypesTransformTask> registerTransform(Project project, SourceSet sourceSet,
+                                                                           ValueTypesExtension extension) {
+
+        TaskProvider<ValueTypesTransformTask> transform = project.getTasks().register(
+                sourceSet.getTaskName("transform", "ValueTypes"), ValueTypesTransformTask.class, task -> {
+            task.setGroup(LifecycleBasePlugin.BUILD_GROUP);
+            task.setDescription("Applies Value Type transformation to the " + sourceSet.getName() + " classes.");
+            task.getClassesDirs().from(sourceSet.getOutput().getClassesDirs());
+            // Not using sourceSet.getRuntimeClasspath(), it depends on our own output through the 'classes' task
+            task.getClasspath().from(project.getConfigurations().getByName(sourceSet.getRuntimeClasspathConfigurationName()));
+            if (!SourceSet.MAIN_SOURCE_SET_NAME.equals(sourceSet.getName())) {
+                task.getClasspath().from(project.getExtensions().getByType(SourceSetContainer.class)
+                        .getByName(SourceSet.MAIN_SOURCE_SET_NAME).getOutput());
+            }
+
+            task.getConfigFile().set(extension.getConfigFile());
+            task.getThreads().set(extension.getThreads());
+            task.getFailOnError().set(extension.getFailOnError());
+            task.getOutputDirectory().set(project.getLayout().getBuildDirectory().dir("classes/valueTypes/" + sourceSet.getName()));
+        });
+
+        project.getTasks().named(sourceSet.getClassesTaskName(), task -> task.dependsOn(transform));
+        return transform;
+    }
+
+    // Puts transformed classes first and removes the original ones from the classpath
+    private static FileCollection replaceClasses(Project project, FileCollection classpath,
+                                                 Map<SourceSet, TaskProvider<ValueTypesTransformTask>> transforms) {
+
+        ConfigurableFileCollection result = project.files();
+        FileCollection rest = classpath;
+        for (Map.Entry<SourceSet, TaskProvider<ValueTypesTransformTask>> e : transforms.entrySet()) {
+            result.from(e.getValue());
+            rest = rest.minus(e.getKey().getOutput().getClassesDirs());
+        }
+
+        result.from(rest);
+        return result;
+    }
+
+    private static boolean isInside(File file, FileCollection dirs) {
+
+        String path = file.getAbsolutePath();
+        for (File dir : dirs) {
+            if (path.startsWith(dir.getAbsolutePath() + File.separator))
+                return true;
+        }
+
+        return false;
+    }
+}
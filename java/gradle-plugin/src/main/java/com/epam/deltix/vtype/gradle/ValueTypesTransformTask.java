@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021-2024 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.gradle;
+
+import com.epam.deltix.vtype.transformer.OfflineTransformer;
+import com.epam.deltix.vtype.transformer.WarningListener;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.*;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.*;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies compiled classes to the output directory, applying Value Type transformation.
+ * Only changed classes are processed, unless the config, the classpath or any Value Type class changes.
+ */
+@CacheableTask
+public abstract class ValueTypesTransformTask extends DefaultTask {
+
+    @Incremental
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getClassesDirs();
+
+    /**
+     * Dependencies of the transformed classes, including Value Type and implementation classes
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getClasspath();
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getConfigFile();
+
+    @Internal
+    public abstract Property<Integer> getThreads();
+
+    @Input
+    public abstract Property<Boolean> getFailOnError();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
+    @TaskAction
+    public void transform(InputChanges inputChanges) throws Exception {
+
+        final File outputDir = getOutputDirectory().get().getAsFile();
+        final List<File> inputs = new ArrayList<>();
+        final List<File> outputs = new ArrayList<>();
+
+        try (OfflineTransformer transformer = createTransformer()) {
+            boolean incremental = inputChanges.isIncremental();
+            if (incremental) {
+                for (FileChange change : inputChanges.getFileChanges(getClassesDirs())) {
+                    if (FileType.FILE == change.getFileType() && isValueTypeClass(transformer, change.getNormalizedPath())) {
+                        getLogger().info("Value Type class changed: {}, transforming all classes", change.getNormalizedPath());
+                        incremental = false;
+                        break;
+                    }
+                }
+            }
+
+            if (incremental) {
+                for (FileChange change : inputChanges.getFileChanges(getClassesDirs())) {
+                    if (FileType.FILE != change.getFileType())
+                        continue;
+
+                    File output = new File(outputDir, change.getNormalizedPath());
+                    if (ChangeType.REMOVED == change.getChangeType()) {
+                        if (output.exists() && !output.delete())
+                            throw new IOException("Unable to delete: " + output);
+                    } else {
+                        inputs.add(change.getFile());
+                        outputs.add(output);
+                    }
+                }
+            } else {
+                getFileSystemOperations().delete(spec -> spec.delete(outputDir));
+                getClassesDirs().getAsFileTree().visit(details -> {
+                    if (!details.isDirectory()) {
+                        inputs.add(details.getFile());
+                        outputs.add(new File(outputDir, details.getRelativePath().getPathString()));
+                    }
+                });
+            }
+
+            transformer.setWarningListener(new WarningListener() {
+                @Override
+                public void onWarnings(String methodName, String text) {
+                    getLogger().warn("Value Type warnings for method: {}:{}{}", methodName, System.lineSeparator(), text);
+                }
+            });
+
+            transformer.transformFiles(inputs, outputs);
+            getLogger().info("Value Types: {}", transformer.getSummary());
+
+            if (0 != transformer.getNumFailed()) {
+                String message = String.format("Value Type transformation failed for %d classes:%n  %s",
+                        transformer.getNumFailed(), String.join(System.lineSeparator() + "  ", transformer.getFailures()));
+
+                if (getFailOnError().get())
+                    throw new GradleException(message);
+
+                getLogger().error(message);
+            }
+        }
+    }
+
+    private OfflineTransformer createTransformer() throws Exception {
+
+        List<File> classpath = new ArrayList<>();
+        for (File file : getClassesDirs().plus(getClasspath())) {
+            if (file.exists()) {
+                classpath.add(file);
+            }
+        }
+
+        return new OfflineTransformer(getConfigFile().get().getAsFile().getPath(), classpath, getThreads().get());
+    }
+
+    private static boolean isValueTypeClass(OfflineTransformer transformer, String path) {
+        return path.endsWith(".class") && transformer.isValueTypeClass(path.substring(0, path.length() - ".class".length()));
+    }
+}
@@ -16,42 +16,32 @@
  */
 package com.epam.deltix.vtype.common;
 
-import java.util.HashMap;
-
+/**
+ * Converts strings, caching the results in a process-wide {@link ConcurrentCache}, so the instances are thread-safe
+ */
 public abstract class CachedStringConverter {
-    private static boolean logCacheUsage = false;
-    // Cache
-    HashMap<String, String> map = new HashMap<>(0x20);
-    private int numHits;
-    private int numMisses;
+    private final ConcurrentCache<String> cache;
+
+    protected CachedStringConverter(String name, int capacity) {
+        cache = new ConcurrentCache<>(name, capacity);
+    }
 
     protected String getCached(String desc) {
 
-        String v = map.get(desc);
-        if (null != v) {
-            ++numHits;
-            return v;
-        } else {
-            ++numMisses;
-            return add(desc);
+        String v = cache.get(desc);
+        if (null == v) {
+            cache.put(desc, v = getValue(desc));
         }
-    }
-
-    private String add(String desc) {
 
-        assert(null == map.get(desc));
-        String value = getValue(desc);
-        map.put(desc, value);
-        return value;
+        return v;
     }
 
     protected abstract String getValue(String desc);
 
-    @Override protected void finalize() throws Throwable {
-        if (logCacheUsage && 0 != numMisses) {
-            System.out.printf("SignatureAppender cache: %d hits, %d misses%n", numHits, numMisses);
-        }
-
-        super.finalize();
+    /**
+     * @return the underlying cache, for hit/miss statistics
+     */
+    public ConcurrentCache<String> getCache() {
+        return cache;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.common;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded lock-free cache keyed by strings (usually type descriptors), shared by all class loading threads.
+ * It is a direct-mapped table of immutable entries: a colliding key just replaces the older entry.
+ * Reads and writes of the table slots are racy, which is safe, because entries only have final fields,
+ * and at worst causes a value to be computed again.
+ */
+public final class ConcurrentCache<V> {
+    private static final class Entry<V> {
+        final String key;
+        final V value;
+
+        Entry(String key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final String name;
+    private final Entry<V>[] entries;
+    private final LongAdder numHits = new LongAdder();
+    private final LongAdder numMisses = new LongAdder();
+
+    /**
+     * @param name name printed in the statistics
+     * @param capacity number of table slots, rounded up to a power of 2
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentCache(String name, int capacity) {
+
+        this.name = name;
+        this.entries = (Entry<V>[]) new Entry<?>[Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1)];
+    }
+
+    private int indexOf(String key) {
+
+        int h = key.hashCode();
+        return (h ^ h >>> 16) & (entries.length - 1);
+    }
+
+    /**
+     * @return cached value for the key, or null if it is not cached. Counts a hit or a miss.
+     */
+    public V get(String key) {
+
+        Entry<V> e = entries[indexOf(key)];
+        if (null != e && key.equals(e.key)) {
+            numHits.increment();
+            return e.value;
+        }
+
+        numMisses.increment();
+        return null;
+    }
+
+    public void put(String key, V value) {
+
+        entries[indexOf(key)] = new Entry<>(key, value);
+    }
+
+    /**
+     * Drop all entries, needed if the function that computes the cached values has changed
+     */
+    public void clear() {
+
+        for (int i = 0; i < entries.length; ++i) {
+            entries[i] = null;
+        }
+    }
+
+    public long getNumHits() {
+        return numHits.sum();
+    }
+
+    public long getNumMisses() {
+        return numMisses.sum();
+    }
+
+    /**
+     * @return ratio of hits to all lookups, 0 if there were no lookups
+     */
+    public double getHitRate() {
+
+        long hits = numHits.sum(), total = hits + numMisses.sum();
+        return 0 == total ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s cache: %d hits, %d misses, hit rate: %.1f%%",
+                name, getNumHits(), getNumMisses(), 100.0 * getHitRate());
+    }
+}
@@ -514,7 +514,10 @@ public class InstructionIterator {
 
             case AbstractInsnNode.LABEL: {
                 LabelNode node = (LabelNode) node0;
-                log.trace("%s:",  node.getLabel().toString());
+                if (logTrace) {
+                    log.trace("%s:", node.getLabel().toString());
+                }
+
                 handler.onLabel(node);
                 break;
             }
@@ -522,14 +525,20 @@ public class InstructionIterator {
             // Covers all 3 variants of LDC
             case AbstractInsnNode.LDC_INSN: {
                 LdcInsnNode node = (LdcInsnNode) node0;
-                log.trace("\t%3s LDC(%s)", node.getOpcode(), node.cst.toString());
+                if (logTrace) {
+                    log.trace("\t%3s LDC(%s)", node.getOpcode(), node.cst.toString());
+                }
+
                 handler.onLdc(node);
                 break;
             }
 
             case AbstractInsnNode.IINC_INSN: {
                 IincInsnNode node = (IincInsnNode) node0;
-                log.trace("\t%3s IINC: var[%s] += %s", node.getOpcode(), node.var, node.incr);
+                if (logTrace) {
+                    log.trace("\t%3s IINC: var[%s] += %s", node.getOpcode(), node.var, node.incr);
+                }
+
                 handler.onIInc(node);
                 break;
             }
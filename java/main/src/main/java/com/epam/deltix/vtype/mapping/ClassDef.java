@@ -54,7 +54,7 @@ public class ClassDef {
     public MethodDef isNullMethod;
 
     // Maps src method name+signature to valuetype implementation. Argument is a hash created from method name+signature
-    HashMap<Integer, MethodDef> methodMap = new HashMap<>(4);
+    final MethodMap methodMap = new MethodMap();
 
     // Maps method names only
     HashMap<String, NameMapping> nameMappings = new HashMap<>(4);
@@ -223,10 +223,21 @@ public class ClassDef {
      * @throws IllegalAccessException
      */
     public void loadNullValue() throws ClassNotFoundException, InvocationTargetException, IllegalAccessException {
+        loadNullValue(ClassDef.class.getClassLoader());
+    }
+
+    /**
+     *
+     * @param classLoader class loader used to load the class that implements unboxing method
+     * @throws ClassNotFoundException
+     * @throws InvocationTargetException
+     * @throws IllegalAccessException
+     */
+    public void loadNullValue(ClassLoader classLoader) throws ClassNotFoundException, InvocationTargetException, IllegalAccessException {
 
         Method unboxMethod = null;
         try {
-            Class<?> cl = Class.forName(classPathToName(unboxingMethod.newOwner));
+            Class<?> cl = Class.forName(classPathToName(unboxingMethod.newOwner), true, classLoader);
             unboxMethod = cl.getMethod(unboxingMethod.newName, cl);
         } catch (NoSuchMethodException e) {
             throw new IllegalStateException(String.format("Unable to load unboxing method of ValueType class: %s", srcClassPath));
@@ -245,6 +256,12 @@ public class ClassDef {
         flags |= ClassDefFlags.F_NULL_CONSTANT_DEFINED;
     }
 
+    void setNullValue(long nullValue) {
+
+        this.nullValue = nullValue;
+        flags |= ClassDefFlags.F_NULL_CONSTANT_DEFINED;
+    }
+
     static String getPath(String path) {
 
         int i = path.lastIndexOf('/');
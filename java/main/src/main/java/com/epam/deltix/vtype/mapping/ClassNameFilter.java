@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.mapping;
+
+import java.util.Arrays;
+
+/**
+ * Matches internal class names against a set of include/exclude patterns, compiled into a character trie.
+ * <p>
+ * Pattern syntax ('.' is treated as '/'):
+ * <ul>
+ *     <li>{@code com/foo/Bar} - exact class name</li>
+ *     <li>{@code com/foo/**} or {@code com/foo/} - all classes in the package and its subpackages</li>
+ *     <li>{@code com/foo/*} - all classes in the package. '*' matches any characters except '/'</li>
+ *     <li>{@code **Test} - '**' matches any characters, including '/'</li>
+ * </ul>
+ * A class is excluded if it matches any exclude pattern or if there are include patterns and it matches none of them.
+ * Patterns ending with '**' are matched without looking at the rest of the class name.
+ * Not thread safe while being built, immutable afterwards.
+ */
+public final class ClassNameFilter {
+    public static final int INCLUDE = 1;
+    public static final int EXCLUDE = 2;
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static final class Node {
+        char[] keys = NO_KEYS;
+        Node[] children = NO_NODES;
+        Node anyInSegment;          // '*'
+        Node any;                   // '**'
+        int flags;                  // INCLUDE/EXCLUDE, if a pattern ends at this node
+
+        Node child(char ch) {
+            char[] keys = this.keys;
+            for (int i = 0; i < keys.length; ++i) {
+                if (ch == keys[i])
+                    return children[i];
+            }
+
+            return null;
+        }
+
+        Node addChild(char ch) {
+            Node node = child(ch);
+            if (null == node) {
+                int n = keys.length;
+                keys = Arrays.copyOf(keys, n + 1);
+                children = Arrays.copyOf(children, n + 1);
+                keys[n] = ch;
+                node = children[n] = new Node();
+            }
+
+            return node;
+        }
+
+        boolean isLeaf() {
+            return 0 == keys.length && null == anyInSegment && null == any;
+        }
+    }
+
+    private final Node root = new Node();
+    private boolean hasIncludes;
+
+    public ClassNameFilter include(String pattern) {
+        add(pattern, INCLUDE);
+        hasIncludes = true;
+        return this;
+    }
+
+    public ClassNameFilter exclude(String pattern) {
+        add(pattern, EXCLUDE);
+        return this;
+    }
+
+    public boolean hasIncludes() {
+        return hasIncludes;
+    }
+
+    private void add(String pattern, int flags) {
+
+        if (null == pattern || pattern.isEmpty())
+            throw new IllegalArgumentException("Empty class name pattern");
+
+        pattern = pattern.replace('.', '/');
+        if (pattern.endsWith("/")) {
+            pattern = pattern + "**";
+        }
+
+        Node node = root;
+        for (int i = 0, n = pattern.length(); i < n; ++i) {
+            char ch = pattern.charAt(i);
+            if ('*' == ch) {
+                if (i + 1 < n && '*' == pattern.charAt(i + 1)) {
+                    ++i;
+                    node = null != node.any ? node.any : (node.any = new Node());
+                } else {
+                    node = null != node.anyInSegment ? node.anyInSegment : (node.anyInSegment = new Node());
+                }
+            } else {
+                node = node.addChild(ch);
+            }
+        }
+
+        node.flags |= flags;
+    }
+
+    /**
+     * @return combined INCLUDE/EXCLUDE flags of all patterns matching the class name
+     */
+    public int match(String className) {
+        return match(root, className, 0);
+    }
+
+    public boolean isExcluded(String className) {
+
+        int flags = match(root, className, 0);
+        return 0 != (flags & EXCLUDE) || hasIncludes && 0 == (flags & INCLUDE);
+    }
+
+    private static int match(Node node, String s, int i) {
+
+        int flags = 0;
+        for (int n = s.length();; ++i) {
+            Node any = node.any;
+            if (null != any) {
+                // '**' at the end of a pattern matches any remainder
+                flags |= any.flags;
+                if (!any.isLeaf()) {
+                    for (int j = i; j <= n; ++j) {
+                        flags |= match(any, s, j);
+                    }
+                }
+            }
+
+            Node anyInSegment = node.anyInSegment;
+            if (null != anyInSegment) {
+                int end = s.indexOf('/', i);
+                end = end < 0 ? n : end;
+                for (int j = i; j <= end; ++j) {
+                    flags |= match(anyInSegment, s, j);
+                }
+            }
+
+            if (i == n)
+                return flags | node.flags;
+
+            node = node.child(s.charAt(i));
+            if (null == node)
+                return flags;
+        }
+    }
+}
@@ -16,6 +16,7 @@
  */
 package com.epam.deltix.vtype.mapping;
 
+import com.epam.deltix.vtype.common.ConcurrentCache;
 import com.epam.deltix.vtype.type.TypeId;
 import com.epam.deltix.vtype.type.TypeIdDefaultFormatter;
 import com.epam.deltix.vtype.type.TypeIdFormatter;
@@ -27,20 +28,29 @@ import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 
 public class Mapping implements TypeIdFormatter {
     private static final int initialClassCapacity = 2;
 
-    HashMap<String, HashMap<Integer, MethodDef>> methodMaps = new HashMap<>(initialClassCapacity);
+    // Concurrent, because with lazy initialization Value Type methods are added while other classes are transformed
+    ConcurrentHashMap<String, MethodMap> methodMaps         = new ConcurrentHashMap<>(initialClassCapacity);
     ArrayList<ClassDef> classes                             = new ArrayList<>(initialClassCapacity);
-    // TODO: Optimization: access by hash taken from char range
     HashMap<String, ClassDef> classesMap                    = new HashMap<>(initialClassCapacity);
+    // Open addressing hash table: src class path -> ClassDef, searched by char range without creating substrings
+    private String[] classTableKeys                         = new String[8];
+    private ClassDef[] classTableValues                     = new ClassDef[8];
+    private long classTableLengths;                         // Bit set of (key length mod 64)
     HashSet<String> mappedClasses                           = new HashSet<>(initialClassCapacity * 2);
-    HashSet<String> ignoredClasses                          = new HashSet<>(initialClassCapacity * 2);
+    final ClassNameFilter classFilter                       = defaultClassFilter();
     HashSet<String> loggedClasses                           = new HashSet<>(initialClassCapacity * 2);
 
+    // Descriptor -> result of DescriptorParser, shared by all transforming threads. Cleared when a class is added
+    private final ConcurrentCache<String> transformedDescCache  = new ConcurrentCache<>("Transformed descriptor", 0x1000);
+    private final ConcurrentCache<int[]> parsedMethodCache      = new ConcurrentCache<>("Parsed descriptor", 0x1000);
+
     // Contains full method name including class path, excluding signature
     HashSet<String> loggedMethods                          = new HashSet<>(initialClassCapacity * 2);
 
@@ -55,25 +65,42 @@ public class Mapping implements TypeIdFormatter {
     private int numLoggedMethods;
     public boolean extraVerification;
     public boolean useQuickScan;
+    public boolean useConstantPoolScan;     // Check class constant pool for Value Type names before running QuickScan
+    public boolean skipPlatformClasses;     // Don't transform classes loaded by the bootstrap or platform class loader
     public long ignoredWarnings;            // Bit set for the list of ignored warnings
     public boolean noDebugData;             // Delete debug data for transformed classes instead of trying to process it
     public boolean deleteAllDebugData;      // Delete debug data for processed an umprocessed classes
     public String classDumpPath;
+    public String classCachePath;           // Root directory of the persistent transformed class cache, null if disabled
+    public int classCacheMaxAgeDays;
+    public String mappingSnapshotPath;      // Binary snapshot of the resolved mapping, loaded instead of scanning Value Type classes
+    public String usageIndexPath;           // Build-time list of classes left unchanged by the transformation, null if not used
+    public String preTransformListPath;     // Classes to transform ahead of time on background threads, null if not used
+    public int preTransformThreads;
+    public int parallelMethodsThreshold;    // Transform methods of a class in parallel, if it has at least that many VT methods
+    public boolean scanCodeSources;         // Scan whole jars once, skip all classes of the jars that don't reference Value Types
+    public boolean lazyInitialization;      // Load Value Type classes when first referenced by a transformed class, not at startup
+
+    private String configFilePath;
+
+    public String getConfigFilePath() {
+        return configFilePath;
+    }
 
-    public HashMap<Integer, MethodDef> getMethodMap(String className) {
-        return methodMaps.get(className);
+    void setConfigFilePath(String configFilePath) {
+        this.configFilePath = configFilePath;
     }
 
-    static public MethodDef getMethod(HashMap<Integer, MethodDef> map, String name, String desc) {
-        return map.get(combineKeys(name, desc));
+    public MethodMap getMethodMap(String className) {
+        return methodMaps.get(className);
     }
 
-    static int combineKeys(String a, String b) {
-        return 0x1B3 * a.hashCode() + b.hashCode();
+    static public MethodDef getMethod(MethodMap map, String name, String desc) {
+        return map.get(name, desc);
     }
 
-    static void addMethod(HashMap<Integer, MethodDef> methodMap, MethodDef method) {
-        methodMap.put(combineKeys(method.oldName, method.oldDesc), method);
+    static void addMethod(MethodMap methodMap, MethodDef method) {
+        methodMap.put(method);
     }
 
     public ClassDef getClassDef(int index) {
@@ -89,12 +116,33 @@ public class Mapping implements TypeIdFormatter {
         return classesMap.get(classPath);
     }
 
+    /**
+     * Find Value Type class definition by the src class path stored in the char range [from, to) of a string,
+     * such as a descriptor. Does not allocate memory.
+     * @return ClassDef or null if not a Value Type
+     */
+    public ClassDef getClassDef(String s, int from, int to) {
+
+        int length = to - from;
+        // Most lookups are for unrelated classes, reject them by length before hashing
+        if (0 == (classTableLengths & 1L << length))
+            return null;
+
+        String[] keys = classTableKeys;
+        int mask = keys.length - 1;
+        for (int i = hashOf(s, from, to) & mask;; i = i + 1 & mask) {
+            String key = keys[i];
+            if (null == key)
+                return null;
+
+            if (key.length() == length && key.regionMatches(0, s, from, length))
+                return classTableValues[i];
+        }
+    }
+
     public int getClassTypeId(String classPathSrc, int from, int to) {
-        throw new UnsupportedOperationException("Not implemented yet");
-        // TODO: OPT: Implement range-based allocation-free class search. Just an extra perf optimization to be considered
-        //ClassDef c = classesMap.get(classPath);
-        //return null == c ? TypeId.REF : c.getTypeId();
-        //return TypeId.VOID;
+        ClassDef c = getClassDef(classPathSrc, from, to);
+        return null == c ? TypeId.OBJ_REF : c.getTypeId();
     }
 
     /**
@@ -104,8 +152,7 @@ public class Mapping implements TypeIdFormatter {
      * @return
      */
     public int getClassTypeId(String classPath) {
-        ClassDef c = classesMap.get(classPath);
-        return null == c ? TypeId.OBJ_REF : c.getTypeId();
+        return getClassTypeId(classPath, 0, classPath.length());
     }
 
     /**
@@ -120,7 +167,11 @@ public class Mapping implements TypeIdFormatter {
 //    }
 
     public int getClassArrayTypeId(String classPath, int arrayDepth) {
-        ClassDef c = classesMap.get(classPath);
+        return getClassArrayTypeId(classPath, 0, classPath.length(), arrayDepth);
+    }
+
+    public int getClassArrayTypeId(String s, int from, int to, int arrayDepth) {
+        ClassDef c = getClassDef(s, from, to);
         return null == c ? TypeId.refOrArrayFrom(arrayDepth) : TypeId.arrayFrom(c.getTypeId(), arrayDepth);
     }
 
@@ -151,9 +202,8 @@ public class Mapping implements TypeIdFormatter {
         if (desc.charAt(i) != 'L')
             return TypeId.OBJ_REF;
 
-        //--n; // Remove ';' at the end
-        //++i; // Remove 'L' at the beginning
-        return getClassArrayTypeId(desc.substring(i + 1, n - 1), arrayDepth);
+        // Skip 'L' at the beginning and ';' at the end
+        return getClassArrayTypeId(desc, i + 1, n - 1, arrayDepth);
     }
 
     public boolean isMappedSrcClass(String classPath) {
@@ -169,7 +219,19 @@ public class Mapping implements TypeIdFormatter {
     }
 
     public boolean isIgnoredClass(String classPath) {
-        return ignoredClasses.contains(classPath);
+        return classFilter.isExcluded(classPath);
+    }
+
+    // Classes we are obviously not going to process
+    static ClassNameFilter defaultClassFilter() {
+        return new ClassNameFilter()
+                .exclude("java/**")
+                .exclude("jdk/**")
+                .exclude("sun/**")
+                .exclude("com/sun/**")
+                .exclude("com/google/**")
+                .exclude("org/gradle/**")
+                .exclude("com/epam/deltix/vtype/transformer/**");
     }
 
     public boolean isLoggedClass(String classPath) {
@@ -181,17 +243,45 @@ public class Mapping implements TypeIdFormatter {
     }
 
 
-    public void loadClasses(AtomicReference<String> currentlyLoadedClass, AtomicReference<ClassDef> currentClassDef) throws Exception {
+    /**
+     * Reads src or dst Value Type class, passing it through the class visitor that collects its method definitions
+     */
+    public interface ClassDefLoader {
+        void load(ClassDef classDef, String classPath) throws Exception;
+    }
 
+    /**
+     * Load Value Type classes through the current class loader, expecting our ClassFileTransformer to scan them
+     */
+    public void loadClasses(final AtomicReference<String> currentlyLoadedClass, final AtomicReference<ClassDef> currentClassDef) throws Exception {
+
+        try {
+            loadClasses(new ClassDefLoader() {
+                @Override
+                public void load(ClassDef classDef, String classPath) throws Exception {
+                    currentlyLoadedClass.set(classPath);
+                    currentClassDef.set(classDef);
+                    Class.forName(classPathToName(classPath));
+                }
+            }, Mapping.class.getClassLoader());
+        } finally {
+            currentlyLoadedClass.set(null);
+            currentClassDef.set(null);
+        }
+    }
+
+    /**
+     * Load Value Type classes
+     * @param loader scans class files of src and dst Value Type classes
+     * @param classLoader class loader used to obtain NULL constants of Value Types
+     */
+    public void loadClasses(ClassDefLoader loader, ClassLoader classLoader) throws Exception {
 
         for(ClassDef classDef : classes) {
             if (classDef.isInitialized())
                 continue;
 
-            String classPath = classDef.getSrcClassPath();
-            currentlyLoadedClass.set(classPath);
-            currentClassDef.set(classDef);
-            Class.forName(classPathToName(classPath));
+            loader.load(classDef, classDef.getSrcClassPath());
             classDef.setFlag(ClassDefFlags.F_SRC_CLASS_PROCESSED);
         }
 
@@ -199,21 +289,35 @@ public class Mapping implements TypeIdFormatter {
             if (classDef.isInitialized())
                 continue;
 
-            String classPath = classDef.getDstClassPath();
-            currentlyLoadedClass.set(classPath);
-            currentClassDef.set(classDef);
-            Class.forName(classPathToName(classPath));
+            loader.load(classDef, classDef.getDstClassPath());
             classDef.setFlag(ClassDefFlags.F_DST_CLASS_PROCESSED);
 
             // We assume all declared methods are read already
             classDef.mapClassMethods();
-            classDef.loadNullValue();
+            classDef.loadNullValue(classLoader);
             if (!classDef.isInitialized())
                 throw new IllegalStateException("Failed to completely initialize ValueType class: " + classDef.getSrcClassPath());
         }
+    }
 
-        currentlyLoadedClass.set(null);
-        currentClassDef.set(null);
+    /**
+     * Load a single Value Type class, same as loadClasses() does for every class
+     * @param loader scans class files of src and dst Value Type classes
+     * @param classLoader class loader used to obtain NULL constant of the Value Type
+     */
+    public void loadClass(ClassDefLoader loader, ClassDef classDef, ClassLoader classLoader) throws Exception {
+
+        if (classDef.isInitialized())
+            return;
+
+        loader.load(classDef, classDef.getSrcClassPath());
+        classDef.setFlag(ClassDefFlags.F_SRC_CLASS_PROCESSED);
+        loader.load(classDef, classDef.getDstClassPath());
+        classDef.setFlag(ClassDefFlags.F_DST_CLASS_PROCESSED);
+        classDef.mapClassMethods();
+        classDef.loadNullValue(classLoader);
+        if (!classDef.isInitialized())
+            throw new IllegalStateException("Failed to completely initialize ValueType class: " + classDef.getSrcClassPath());
     }
 
     public int numLoadedClasses() {
@@ -234,7 +338,7 @@ public class Mapping implements TypeIdFormatter {
     }
 
 
-    public void addMethodMap(String ownerClassPath, HashMap<Integer, MethodDef> methodMap) {
+    public void addMethodMap(String ownerClassPath, MethodMap methodMap) {
         methodMaps.put(ownerClassPath, methodMap);
     }
 
@@ -251,6 +355,69 @@ public class Mapping implements TypeIdFormatter {
 
         classes.add(cl);
         classesMap.put(cl.getSrcClassPath(), cl);
+        addToClassTable(cl);
+        transformedDescCache.clear();
+        parsedMethodCache.clear();
+    }
+
+
+    public ConcurrentCache<String> getTransformedDescCache() {
+        return transformedDescCache;
+    }
+
+    /**
+     * @return cache of parsed method descriptors, each value is {return type, arg types...}
+     */
+    public ConcurrentCache<int[]> getParsedMethodCache() {
+        return parsedMethodCache;
+    }
+
+
+    private static int hashOf(String s, int from, int to) {
+
+        int h = 0;
+        for (int i = from; i < to; ++i) {
+            h = 31 * h + s.charAt(i);
+        }
+
+        return h ^ h >>> 16;
+    }
+
+
+    private void addToClassTable(ClassDef cl) {
+
+        // Load factor <= 1/2
+        if (2 * classes.size() > classTableKeys.length) {
+            String[] keys = classTableKeys;
+            ClassDef[] values = classTableValues;
+            classTableKeys = new String[keys.length * 2];
+            classTableValues = new ClassDef[keys.length * 2];
+            for (int i = 0; i < keys.length; ++i) {
+                if (null != keys[i]) {
+                    putToClassTable(keys[i], values[i]);
+                }
+            }
+        }
+
+        putToClassTable(cl.getSrcClassPath(), cl);
+        classTableLengths |= 1L << cl.getSrcClassPath().length();
+    }
+
+
+    private void putToClassTable(String key, ClassDef value) {
+
+        String[] keys = classTableKeys;
+        int mask = keys.length - 1;
+        int i = hashOf(key, 0, key.length()) & mask;
+        while (null != keys[i]) {
+            if (key.equals(keys[i]))
+                break;
+
+            i = i + 1 & mask;
+        }
+
+        keys[i] = key;
+        classTableValues[i] = value;
     }
 
 
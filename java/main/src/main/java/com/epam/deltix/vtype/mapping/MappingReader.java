@@ -24,7 +24,6 @@ import org.json.JSONObject;
 
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
 
 import static com.epam.deltix.vtype.transformer.AsmUtil.classNameToPath;
 import static com.epam.deltix.vtype.transformer.AsmUtil.makeTypeDesc;
@@ -145,7 +144,14 @@ public class MappingReader {
         JSONArray excludedClasses = getOptionalArray(json,"excludedClasses");
         if (isNonEmptyStringArray(excludedClasses)) {
             for (Object i : excludedClasses) {
-                mapping.ignoredClasses.add((String)i);
+                mapping.classFilter.exclude((String)i);
+            }
+        }
+
+        JSONArray includedClasses = getOptionalArray(json,"includedClasses");
+        if (isNonEmptyStringArray(includedClasses)) {
+            for (Object i : includedClasses) {
+                mapping.classFilter.include((String)i);
             }
         }
 
@@ -167,15 +173,27 @@ public class MappingReader {
         mapping.logSuccesses        = getOptionalBool(json, "logSuccesses", true) || mapping.logEveryClass || mapping.logAllMethods;
         mapping.extraVerification   = getOptionalBool(json, "extraVerification", false);
         mapping.useQuickScan        = getOptionalBool(json, "useQuickScan", true);
+        mapping.useConstantPoolScan = getOptionalBool(json, "useConstantPoolScan", true);
+        mapping.skipPlatformClasses = getOptionalBool(json, "skipPlatformClasses", true);
         mapping.noDebugData         = getOptionalBool(json, "skipDebugData", false);
         mapping.deleteAllDebugData  = getOptionalBool(json, "deleteAllDebugData", false);
         mapping.classDumpPath       = getOptionalString(json, "classDumpPath", null);
+        mapping.classCachePath      = getOptionalString(json, "classCachePath", null);
+        mapping.classCacheMaxAgeDays = getOptionalInt(json, "classCacheMaxAgeDays", 30);
+        mapping.mappingSnapshotPath = getOptionalString(json, "mappingSnapshot", null);
+        mapping.usageIndexPath      = getOptionalString(json, "usageIndex", null);
+        mapping.preTransformListPath = getOptionalString(json, "preTransformList", null);
+        mapping.preTransformThreads = getOptionalInt(json, "preTransformThreads", 2);
+        mapping.parallelMethodsThreshold = getOptionalInt(json, "parallelMethodsThreshold", 0);
+        mapping.scanCodeSources     = getOptionalBool(json, "scanCodeSources", false);
+        mapping.lazyInitialization  = getOptionalBool(json, "lazyInitialization", false);
     }
 
 
     private Mapping parseFile(String configFilePath) throws IOException {
 
         Mapping m = new Mapping();
+        m.setConfigFilePath(configFilePath);
         FileReader reader = new FileReader(configFilePath);
         JSONTokener jsonTokener = new JSONTokener(reader);
         JSONObject json = new JSONObject(jsonTokener);
@@ -200,9 +218,9 @@ public class MappingReader {
     private void addAutoMethod(Mapping mapping, String methodSignature) throws IOException {
 
         ParsedMethod method = parseMethod(methodSignature);
-        HashMap<Integer, MethodDef> mm = mapping.getMethodMap(method.owner);
+        MethodMap mm = mapping.getMethodMap(method.owner);
         if (null == mm) {
-            mm = new HashMap<>();
+            mm = new MethodMap();
             mapping.addMethodMap(method.owner, mm);
         }
 
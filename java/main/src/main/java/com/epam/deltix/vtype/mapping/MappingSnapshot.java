@@ -0,0 +1,188 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.mapping;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Binary snapshot of the fully resolved Mapping: methods of Value Type classes, matched with their implementations,
+ * and Value Type NULL constants. Loading it replaces loading and scanning of Value Type classes and reflection calls.
+ * <p>
+ * The snapshot is bound to a fingerprint of everything it was built from (see MappingFingerprint), and is ignored
+ * if the fingerprint doesn't match.
+ */
+public final class MappingSnapshot {
+    private static final int MAGIC = 0x56544D53; // "VTMS"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int M_STATIC = 1;
+    private static final int M_COMMUTATIVE = 2;
+
+    private MappingSnapshot() {}
+
+    /**
+     * Write a snapshot of completely initialized mapping
+     */
+    public static void write(Mapping mapping, String fingerprint, File file) throws IOException {
+
+        File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp" + System.nanoTime());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, fingerprint);
+                out.writeInt(mapping.numClasses());
+                for (int i = 0, n = mapping.numClasses(); i < n; ++i) {
+                    ClassDef cl = mapping.getClassDef(i);
+                    if (!cl.isInitialized())
+                        throw new IllegalStateException("Value Type class is not initialized: " + cl.getSrcClassPath());
+
+                    writeString(out, cl.getSrcClassPath());
+                    writeString(out, cl.getDstClassPath());
+                    out.writeLong(cl.getNullValue());
+                    MethodDef[] methods = cl.methodMap.values();
+                    out.writeInt(methods.length);
+                    for (MethodDef m : methods) {
+                        writeString(out, m.oldName);
+                        writeString(out, m.oldDesc);
+                        writeString(out, m.newOwner);
+                        writeString(out, m.newName);
+                        writeString(out, m.newDesc);
+                        writeString(out, m.debugName);
+                        out.writeByte((m.isNonStaticSrc ? 0 : M_STATIC) | (m.isCommutative ? M_COMMUTATIVE : 0));
+                    }
+                }
+            }
+
+            try {
+                Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), REPLACE_EXISTING);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Initialize Value Type classes of the mapping from the snapshot. The mapping is not modified if the snapshot
+     * is missing, was made for a different fingerprint, or can't be applied (then an exception is thrown)
+     * @return true if the mapping is initialized
+     */
+    public static boolean read(Mapping mapping, String fingerprint, File file) throws IOException {
+
+        if (!file.isFile())
+            return false;
+
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (in.remaining() < 8 || MAGIC != in.getInt() || FORMAT_VERSION != in.getInt()
+                || !fingerprint.equals(readString(in)) || mapping.numClasses() != in.getInt())
+            return false;
+
+        // Parse everything before modifying the mapping
+        int numClasses = mapping.numClasses();
+        long[] nullValues = new long[numClasses];
+        String[][] methods = new String[numClasses][];
+        byte[][] methodFlags = new byte[numClasses][];
+        for (int i = 0; i < numClasses; ++i) {
+            ClassDef cl = mapping.getClassDef(i);
+            if (!cl.getSrcClassPath().equals(readString(in)) || !cl.getDstClassPath().equals(readString(in)))
+                return false;
+
+            nullValues[i] = in.getLong();
+            int numMethods = in.getInt();
+            String[] strings = methods[i] = new String[6 * numMethods];
+            byte[] flags = methodFlags[i] = new byte[numMethods];
+            for (int j = 0; j < numMethods; ++j) {
+                for (int k = 0; k < 6; ++k) {
+                    strings[6 * j + k] = readString(in);
+                }
+
+                flags[j] = in.get();
+            }
+        }
+
+        // Create and verify all methods before modifying the mapping, so a failure leaves it untouched
+        MethodDef[][] classMethods = new MethodDef[numClasses][];
+        for (int i = 0; i < numClasses; ++i) {
+            ClassDef cl = mapping.getClassDef(i);
+            if (cl.isInitialized())
+                continue;
+
+            if (!ClassDefFlags.allSet(cl.getFlags(), ClassDefFlags.F_SRC_BOX_METHOD_DEFINED | ClassDefFlags.F_SRC_UNBOX_METHOD_DEFINED
+                    | ClassDefFlags.F_DST_BOX_METHOD_DEFINED | ClassDefFlags.F_DST_UNBOX_METHOD_DEFINED))
+                throw new IllegalStateException("Boxing methods of ValueType class are not defined: " + cl.getSrcClassPath());
+
+            String[] strings = methods[i];
+            byte[] flags = methodFlags[i];
+            MethodDef[] defs = classMethods[i] = new MethodDef[flags.length];
+            for (int j = 0; j < flags.length; ++j) {
+                int s = 6 * j;
+                MethodDef m = MethodDef.createPartial(cl, strings[s], strings[s + 1], 0 != (flags[j] & M_STATIC), strings[s + 5]);
+                m.setDestinationMethod(strings[s + 2], strings[s + 3], strings[s + 4], 0 != (flags[j] & M_COMMUTATIVE));
+                if (!m.isInitialized())
+                    throw new IllegalStateException("Failed to initialize ValueType method from snapshot: " + m.getSrcString());
+
+                defs[j] = m;
+            }
+        }
+
+        for (int i = 0; i < numClasses; ++i) {
+            ClassDef cl = mapping.getClassDef(i);
+            if (null == classMethods[i])
+                continue;
+
+            for (MethodDef m : classMethods[i]) {
+                cl.addMethod(m);
+            }
+
+            cl.setFlag(ClassDefFlags.F_SRC_CLASS_PROCESSED | ClassDefFlags.F_SRC_ALL_METHODS_DEFINED
+                    | ClassDefFlags.F_DST_CLASS_PROCESSED | ClassDefFlags.F_DST_ALL_METHODS_DEFINED);
+            cl.mapClassMethods();
+            cl.setNullValue(nullValues[i]);
+        }
+
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
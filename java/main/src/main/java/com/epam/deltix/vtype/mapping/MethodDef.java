@@ -19,13 +19,16 @@ package com.epam.deltix.vtype.mapping;
 import com.epam.deltix.vtype.type.DescriptorParser;
 import com.epam.deltix.vtype.type.TypeId;
 
+import java.util.Arrays;
+
 import static com.epam.deltix.vtype.type.DescriptorParser.parseMethod;
 
 public class MethodDef {
+    private static final int[] NO_ARGS = new int[1];
 
     final ClassDef owner;
-    public int[] args = new int [0x100];
-    private boolean[] isVTypeArg = new boolean[0x100];
+    // [0] is the return type, [1..numArgs] are the arguments. Sized exactly, MethodDefs are retained by the mapping
+    public int[] args = NO_ARGS;
     public int numArgs;
     private int numVTypeArgs;
 
@@ -86,6 +89,7 @@ public class MethodDef {
         this.newDesc = newDesc;
         this.debugName = debugName;
 
+        int[] args = new int[0x100];
         try {
             numArgs = DescriptorParser.parseMethod(args, false, null, newDesc, owner.mapping);
         }
@@ -95,6 +99,8 @@ public class MethodDef {
 
         if (-1 == numArgs)
             throw new IllegalArgumentException(String.format("Unable to parse boxing/unboxing method: %s.%s%s", newOwner, newName, newDesc));
+
+        this.args = Arrays.copyOf(args, numArgs + 1);
     }
 
     /**
@@ -166,6 +172,7 @@ public class MethodDef {
 
     void initialize() {
         // Parse and verify arguments
+        int[] args = new int [0x100];
         int[] args2 = new int [0x100];
         int numArgs2;
         Mapping mapping = null != owner ? owner.mapping : null;
@@ -188,7 +195,7 @@ public class MethodDef {
                 throw new IllegalArgumentException(String.format("return value mismatch between %s.%s and %s.%s", oldName, oldDesc, newName, newDesc));
             } else {
                 // Returns compatible integer representation or array of integers
-                isVTypeArg[0] = returnsVType = true;
+                returnsVType = true;
             }
         }
 
@@ -200,13 +207,13 @@ public class MethodDef {
                     throw new IllegalArgumentException(String.format("arg %d mismatch 0x%x <=> 0x%x between %s.%s and %s.%s",
                             i, args[i], args2[i], oldName, oldDesc, newName, newDesc));
                 } else {
-                    isVTypeArg[i] = true;
                     ++numVTypeArgs;
                 }
             }
         }
 
         this.numVTypeArgs = numVTypeArgs;
+        this.args = Arrays.copyOf(args, numArgs + 1);
 
         if (TypeId.VT_WILDCARD_INDEX == ownerIndex) {
             oldDesc = oldDesc.replace("LValueType;", "Ljava/lang/Object;");
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.mapping;
+
+/**
+ * Open addressing hash table: method name + descriptor -> MethodDef.
+ * Keyed by 64-bit combination of name and descriptor hash codes (cached by String), name and descriptor are compared
+ * on hit, so different methods never replace each other. No boxing on lookup.
+ * Filled during mapping initialization, read-only afterwards.
+ */
+public final class MethodMap {
+    private long[] keys = new long[8];
+    private String[] names = new String[8];
+    private String[] descs = new String[8];
+    private MethodDef[] values = new MethodDef[8];
+    private int size;
+
+    private static long keyOf(String name, String desc) {
+        return (long)name.hashCode() << 32 | desc.hashCode() & 0xFFFFFFFFL;
+    }
+
+    private static int indexOf(long key, int mask) {
+        return (int)(key * 0x9E3779B97F4A7C15L >>> 32) & mask;
+    }
+
+    public MethodDef get(String name, String desc) {
+
+        long key = keyOf(name, desc);
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = indexOf(key, mask);; i = i + 1 & mask) {
+            // Empty slots also have zero key, so check for them first
+            if (null == values[i])
+                return null;
+
+            if (key == keys[i] && name.equals(names[i]) && desc.equals(descs[i]))
+                return values[i];
+        }
+    }
+
+    /**
+     * Add method, replacing the one with the same name and descriptor, if any
+     */
+    public void put(MethodDef method) {
+
+        if (2 * (size + 1) > keys.length) {
+            long[] oldKeys = keys;
+            String[] oldNames = names;
+            String[] oldDescs = descs;
+            MethodDef[] oldValues = values;
+            int capacity = 2 * oldKeys.length;
+            keys = new long[capacity];
+            names = new String[capacity];
+            descs = new String[capacity];
+            values = new MethodDef[capacity];
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (null != oldValues[i]) {
+                    insert(oldKeys[i], oldNames[i], oldDescs[i], oldValues[i]);
+                }
+            }
+        }
+
+        if (insert(keyOf(method.oldName, method.oldDesc), method.oldName, method.oldDesc, method)) {
+            ++size;
+        }
+    }
+
+    private boolean insert(long key, String name, String desc, MethodDef method) {
+
+        int mask = keys.length - 1;
+        int i = indexOf(key, mask);
+        for (; null != values[i]; i = i + 1 & mask) {
+            if (key == keys[i] && name.equals(names[i]) && desc.equals(descs[i])) {
+                values[i] = method;
+                return false;
+            }
+        }
+
+        keys[i] = key;
+        names[i] = name;
+        descs[i] = desc;
+        values[i] = method;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return all methods, in no particular order
+     */
+    public MethodDef[] values() {
+
+        MethodDef[] result = new MethodDef[size];
+        int n = 0;
+        for (MethodDef m : values) {
+            if (null != m) {
+                result[n++] = m;
+            }
+        }
+
+        return result;
+    }
+}
@@ -293,6 +293,14 @@ public class AsmUtil {
      * @param mapping
      */
     public static void initializeMethodArguments(final VariableMap vars, final org.objectweb.asm.tree.MethodNode methodNode, final Mapping mapping) {
+        initializeMethodArguments(vars, methodNode, mapping, new int[0x100]);
+    }
+
+    /**
+     * @param methodArgs temporary array for parsed argument types, at least 0x100 entries
+     */
+    public static void initializeMethodArguments(final VariableMap vars, final org.objectweb.asm.tree.MethodNode methodNode, final Mapping mapping,
+                                                 final int[] methodArgs) {
 
         String name, desc;
         vars.clear();
@@ -310,7 +318,6 @@ public class AsmUtil {
         }
 
         if (!desc.startsWith("()")) {
-            int[] methodArgs = new int[0x100];
             int nMethodArgs = DescriptorParser.parseMethod(methodArgs, false, name, desc, mapping);
             vars.add(methodArgs, null, 1, nMethodArgs);
         }
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.Mapping;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Persistent on-disk cache of transformation results, shared between JVM instances.
+ * <p>
+ * Entries are stored under {@code <root>/<mapping fingerprint>/<xx>/<sha1 of original class>.class}.
+ * Zero-length entry means that the class was processed, but left unchanged.
+ * Entries are written to a temporary file first, then atomically renamed, so concurrent readers never see
+ * partially written data. Entries not used for more than the configured number of days are deleted.
+ */
+final class ClassCache {
+    private static final byte[] NOT_TRANSFORMED = new byte[0];
+    private static final long MILLIS_PER_DAY = 24L * 3600 * 1000;
+
+    private final File root;
+    private final File dir;
+    private final long maxAgeMillis;
+
+    // Keys of the entries known to be present. Until indexing is complete, we have to check the file system
+    private final Set<String> knownKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean indexed;
+
+    private final AtomicLong numHits = new AtomicLong();
+    private final AtomicLong numMisses = new AtomicLong();
+    private final AtomicLong numStored = new AtomicLong();
+    private final AtomicBoolean writeErrorReported = new AtomicBoolean();
+
+    private final ThreadLocal<MessageDigest> digest = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            return MappingFingerprint.newDigest();
+        }
+    };
+
+    ClassCache(File root, String fingerprint, int maxAgeDays) {
+
+        this.root = root;
+        this.dir = new File(root, fingerprint);
+        this.maxAgeMillis = maxAgeDays * MILLIS_PER_DAY;
+    }
+
+    static ClassCache create(Mapping mapping, ClassLoader loader) throws IOException {
+
+        File root = new File(mapping.classCachePath).getAbsoluteFile();
+        String fingerprint = MappingFingerprint.compute(mapping, loader);
+        ClassCache cache = new ClassCache(root, fingerprint, mapping.classCacheMaxAgeDays);
+        if (!cache.dir.isDirectory() && !cache.dir.mkdirs() && !cache.dir.isDirectory())
+            throw new IOException("Unable to create class cache directory: " + cache.dir);
+
+        System.out.printf("VT Agent: Using class cache: %s%n", cache.dir);
+        cache.start();
+        return cache;
+    }
+
+    String keyOf(byte[] classBytes) {
+
+        MessageDigest md = digest.get();
+        md.reset();
+        return MappingFingerprint.toHex(md.digest(classBytes));
+    }
+
+    static boolean isTransformed(byte[] cachedData) {
+        return 0 != cachedData.length;
+    }
+
+    /**
+     * @return cached transformation result, zero-length array for a class that should stay unchanged, null on cache miss
+     */
+    byte[] get(String key) {
+
+        File file = fileOf(key);
+        if (indexed ? !knownKeys.contains(key) : !file.isFile()) {
+            numMisses.incrementAndGet();
+            return null;
+        }
+
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            // Possibly deleted by another process
+            knownKeys.remove(key);
+            numMisses.incrementAndGet();
+            return null;
+        }
+
+        if (0 != data.length && !isClassFile(data)) {
+            knownKeys.remove(key);
+            file.delete();
+            numMisses.incrementAndGet();
+            return null;
+        }
+
+        // Prevent expiration of the entries that are still in use. Don't touch the file on every hit
+        long now = System.currentTimeMillis();
+        if (now - file.lastModified() > maxAgeMillis / 4) {
+            file.setLastModified(now);
+        }
+
+        numHits.incrementAndGet();
+        return 0 != data.length ? data : NOT_TRANSFORMED;
+    }
+
+    /**
+     * @param data transformed class, or null if the class should stay unchanged
+     */
+    void put(String key, byte[] data) {
+
+        File file = fileOf(key);
+        File parent = file.getParentFile();
+        File tmp = null;
+        try {
+            if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+                throw new IOException("Unable to create directory: " + parent);
+
+            tmp = File.createTempFile(key.substring(2, 10), ".tmp", parent);
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                if (null != data) {
+                    out.write(data);
+                }
+            }
+
+            try {
+                Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), REPLACE_EXISTING);
+            }
+
+            tmp = null;
+            knownKeys.add(key);
+            numStored.incrementAndGet();
+        } catch (IOException e) {
+            if (writeErrorReported.compareAndSet(false, true)) {
+                System.err.printf("VT Agent: WARNING: Unable to write class cache entry %s: %s%n", file, e);
+            }
+        } finally {
+            if (null != tmp) {
+                tmp.delete();
+            }
+        }
+    }
+
+    long getNumHits() {
+        return numHits.get();
+    }
+
+    long getNumMisses() {
+        return numMisses.get();
+    }
+
+    long getNumStored() {
+        return numStored.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Class cache: %d hits, %d misses, %d stored", getNumHits(), getNumMisses(), getNumStored());
+    }
+
+    private File fileOf(String key) {
+        return new File(new File(dir, key.substring(0, 2)), key.substring(2) + ".class");
+    }
+
+    private static boolean isClassFile(byte[] data) {
+        return data.length > 4 && (byte)0xCA == data[0] && (byte)0xFE == data[1] && (byte)0xBA == data[2] && (byte)0xBE == data[3];
+    }
+
+    private void start() {
+
+        Thread sweeper = new Thread("VT Agent class cache sweeper") {
+            @Override
+            public void run() {
+                sweep();
+            }
+        };
+
+        sweeper.setDaemon(true);
+        sweeper.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread("VT Agent class cache stats") {
+            @Override
+            public void run() {
+                System.out.printf("VT Agent: %s%n", ClassCache.this);
+            }
+        });
+    }
+
+    // Deletes expired entries (for all mapping fingerprints) and indexes the entries of the current one
+    void sweep() {
+
+        long expiredBefore = System.currentTimeMillis() - maxAgeMillis;
+        try {
+            File[] fingerprintDirs = root.listFiles();
+            if (null != fingerprintDirs) {
+                for (File fingerprintDir : fingerprintDirs) {
+                    sweepDir(fingerprintDir, expiredBefore, fingerprintDir.equals(dir));
+                }
+            }
+        } catch (Throwable e) {
+            System.err.printf("VT Agent: WARNING: Class cache cleanup failed: %s%n", e);
+        }
+
+        indexed = true;
+    }
+
+    private void sweepDir(File fingerprintDir, long expiredBefore, boolean isCurrent) {
+
+        File[] subDirs = fingerprintDir.listFiles();
+        if (null == subDirs)
+            return;
+
+        for (File subDir : subDirs) {
+            File[] files = subDir.listFiles();
+            if (null == files)
+                continue;
+
+            String prefix = subDir.getName();
+            for (File file : files) {
+                String name = file.getName();
+                if (file.lastModified() < expiredBefore) {
+                    file.delete();
+                } else if (isCurrent && name.endsWith(".class")) {
+                    knownKeys.add(prefix + name.substring(0, name.length() - ".class".length()));
+                }
+            }
+
+            if (!isCurrent) {
+                // Only succeeds if empty
+                subDir.delete();
+            }
+        }
+
+        if (!isCurrent) {
+            fingerprintDir.delete();
+        }
+    }
+}
@@ -19,14 +19,22 @@ package com.epam.deltix.vtype.transformer;
 import com.epam.deltix.vtype.mapping.ClassDef;
 import com.epam.deltix.vtype.mapping.Mapping;
 import com.epam.deltix.vtype.mapping.MappingReader;
+import com.epam.deltix.vtype.mapping.MappingSnapshot;
 import org.objectweb.asm.*;
 
 import java.io.*;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
 import static org.objectweb.asm.Opcodes.ASM9;
+import static org.objectweb.asm.Opcodes.V1_7;
 
 
 class ClassFileTransformer implements java.lang.instrument.ClassFileTransformer {
@@ -42,39 +50,110 @@ class ClassFileTransformer implements java.lang.instrument.ClassFileTransformer
 
     private static final String defaultConfigFilePath = "valuetypes.json";
     static private Mapping mapping;
-    private boolean initialized;
-    private int numFailedClasses;
-    private int numFailedMethods;
-    private PrintWriter fileLogger;
-    static private final Object lockObj = new Integer(1);
+    // Published once by readClasses(), transform() reads it without locking
+    private volatile boolean initialized;
+    private final AtomicInteger numFailedClasses = new AtomicInteger();
+    private final AtomicInteger numFailedMethods = new AtomicInteger();
+    private volatile PrintWriter fileLogger;
+    private ClassCache classCache;
+    private UsageIndex usageIndex;
+    private final PreTransformer preTransformer;
+    private final ConstantPoolScanner constantPoolScanner;
+    private final CodeSourceScanner codeSourceScanner;
+    // Lazy initialization: finds Value Types referenced by a class, and the state of each Value Type class (VT_*)
+    private final ConstantPoolScanner valueTypeScanner;
+    private final AtomicIntegerArray valueTypeStates;
+    private static final int VT_LOADING = 1;
+    private static final int VT_DONE = 2;
+    // Translation state is reused by consecutive classes transformed on the same thread
+    private static final ThreadLocal<TranslationState> cachedState = new ThreadLocal<>();
+    private static final ClassLoader platformClassLoader = findPlatformClassLoader();
     //static private final Semaphore firstFullTransform = new Semaphore(1);
     //private volatile boolean firstFullTransformTransformOccured = false;
 
     ClassFileTransformer(String configPath) throws ClassNotFoundException, IOException {
 
-        initialized = false;
-        numFailedClasses = numFailedMethods = 0;
         configPath = null != configPath ? configPath : defaultConfigFilePath;
         System.out.printf("VT Agent: Begin reading transformation config: %s\n", configPath);
-        synchronized (lockObj) {
+        synchronized (ClassFileTransformer.class) {
             if (null == mapping) {
                 mapping = MappingReader.parse(configPath);
             }
         }
 
         System.out.println("VT Agent: End reading transformation config");
+        constantPoolScanner = ConstantPoolScanner.forMapping(mapping);
+        preTransformer = null != mapping.preTransformListPath
+                ? new PreTransformer(this, mapping.preTransformListPath, mapping.preTransformThreads) : null;
+        codeSourceScanner = mapping.scanCodeSources && null != constantPoolScanner
+                ? new CodeSourceScanner(constantPoolScanner, mapping.logEveryClass) : null;
+        if (mapping.lazyInitialization) {
+            List<String> classPaths = new ArrayList<>(mapping.numClasses());
+            for (int i = 0, n = mapping.numClasses(); i < n; ++i) {
+                classPaths.add(mapping.getClassDef(i).getSrcClassPath());
+            }
+
+            valueTypeScanner = new ConstantPoolScanner(classPaths);
+            valueTypeStates = new AtomicIntegerArray(classPaths.size());
+        } else {
+            valueTypeScanner = null;
+            valueTypeStates = null;
+        }
+
+        if (null != mapping.classCachePath) {
+            try {
+                classCache = ClassCache.create(mapping, ClassLoader.getSystemClassLoader());
+            } catch (IOException e) {
+                System.err.printf("VT Agent: WARNING: Class cache disabled: %s%n", e);
+            }
+        }
+
+        if (null != mapping.usageIndexPath) {
+            try {
+                usageIndex = UsageIndex.load(mapping, ClassLoader.getSystemClassLoader());
+            } catch (IOException e) {
+                System.err.printf("VT Agent: WARNING: Failed to read usage index: %s%n", e);
+            }
+
+            if (null != usageIndex) {
+                System.out.printf("VT Agent: Usage index loaded, %d classes will not be scanned%n", usageIndex.size());
+            } else {
+                System.out.printf("VT Agent: Usage index is missing or outdated: %s%n", mapping.usageIndexPath);
+            }
+        }
+
+        if (mapping.logSuccesses) {
+            Runtime.getRuntime().addShutdownHook(new Thread("VT Agent statistics") {
+                @Override
+                public void run() {
+                    long numMethods = MethodNode.getNumTransformedMethods();
+                    long numStraightLine = MethodNode.getNumStraightLineMethods();
+                    System.out.printf("VT Agent: Straight-line fast path: %d of %d transformed methods (%.1f%%)%n",
+                            numStraightLine, numMethods, 0 == numMethods ? 0.0 : 100.0 * numStraightLine / numMethods);
+                    System.out.printf("VT Agent: %s%n", mapping.getTransformedDescCache());
+                    System.out.printf("VT Agent: %s%n", mapping.getParsedMethodCache());
+                    System.out.printf("VT Agent: %s%n", MethodNameTransformer.shared().getCache());
+                }
+            });
+        }
     }
 
     PrintWriter getLogFile() {
 
         PrintWriter out = this.fileLogger;
         if (null == out) {
-            try {
-                out = this.fileLogger =  new PrintWriter("valueTypeAgent.log");
-            } catch (Throwable e) {
-                System.out.println("Value Type agent is unable to open log file:");
-                e.printStackTrace();
-                return null;
+            // Only reached on the first failure, so locking here doesn't affect normal class loading
+            synchronized (this) {
+                out = this.fileLogger;
+                if (null == out) {
+                    try {
+                        out = this.fileLogger = new PrintWriter("valueTypeAgent.log");
+                    } catch (Throwable e) {
+                        System.out.println("Value Type agent is unable to open log file:");
+                        e.printStackTrace();
+                        return null;
+                    }
+                }
             }
         }
 
@@ -82,29 +161,38 @@ class ClassFileTransformer implements java.lang.instrument.ClassFileTransformer
     }
 
 
-    synchronized void onFailedClass(final String className) {
+    void onFailedClass(final String className) {
 
-        ++numFailedClasses;
+        int n = numFailedClasses.incrementAndGet();
         PrintWriter out = getLogFile();
         if (null == out)
             return;
 
-        out.println("FAILED class # " + numFailedClasses + ": " + className);
+        // Single println() is atomic, no need for extra locking
+        out.println("FAILED class # " + n + ": " + className);
         out.flush();
     }
 
 
-    synchronized void onFailedMethod(final String methodName) {
+    void onFailedMethod(final String methodName) {
 
-        ++numFailedMethods;
+        int n = numFailedMethods.incrementAndGet();
         PrintWriter out = getLogFile();
         if (null == out)
             return;
 
-        out.println("FAILED method # " + numFailedMethods + ": " + methodName);
+        out.println("FAILED method # " + n + ": " + methodName);
         out.flush();
     }
 
+    int getNumFailedClasses() {
+        return numFailedClasses.get();
+    }
+
+    int getNumFailedMethods() {
+        return numFailedMethods.get();
+    }
+
 
     @Override
     public byte[] transform(ClassLoader loader, final String className, Class<?> classBeingRedefined,
@@ -122,38 +210,21 @@ class ClassFileTransformer implements java.lang.instrument.ClassFileTransformer
                 System.out.print("VT Agent: Asked to transform class: " + className);
             }
 
-            synchronized (lockObj) {
-                classDef = currentClassDef.get();
-
-                if (null != classDef && (null == className || !(className.equals(classDef.getSrcClassPath()) || className.equals(classDef.getDstClassPath())))) {
-                    classDef = null;
-                }
-
-                if (!initialized && null == classDef) {
-                    if (mapping.logEveryClass) {
-                        System.out.print(", Not Initialized - Will Ignore ");
+            classDef = currentClassDef.get();
+            if (null != classDef && (null == className || !(className.equals(classDef.getSrcClassPath()) || className.equals(classDef.getDstClassPath())))) {
+                classDef = null;
+            }
 
-                    }
-                    else if (mapping.isLoggedClass(className)) {
-                        System.out.println("VT Agent: Not Initialized - Will ignore class: " + className);
-                    }
+            if (!initialized && null == classDef) {
+                if (mapping.logEveryClass) {
+                    System.out.print(", Not Initialized - Will Ignore ");
 
-                    return null;
+                }
+                else if (mapping.isLoggedClass(className)) {
+                    System.out.println("VT Agent: Not Initialized - Will ignore class: " + className);
                 }
 
-//                if (!firstFullTransformTransformOccured) {
-//                    if (!firstFullTransform.tryAcquire()) {
-//                        System.out.println();
-//                        System.out.println("Blocked on another thread doing transformation");
-//                        firstFullTransform.acquire();
-//                        firstFullTransform.release();
-//
-//                        assert(firstFullTransformTransformOccured == true);
-//                        //if (mapping.logEveryClass) {
-//                            System.out.print("Waited for another thread doing 1st transformation");
-//                        //}
-//                    }
-//                }
+                return null;
             }
 
             // TODO: lambdas not processed
@@ -167,16 +238,13 @@ class ClassFileTransformer implements java.lang.instrument.ClassFileTransformer
                 System.out.printf("VT Agent: Loading class: %s%n", className);
             }
 
-            // Skip some classes we are obviously not going to process
-            if (null != className && (className.startsWith("java/")
-                    || className.startsWith("sun/")
-                    || className.startsWith("org/gradle/")
-                    || className.startsWith("com/google/")
-                    || className.startsWith("com/sun/")
-                    || className.startsWith("com/epam/deltix/vtype/transformer/")
-                    || mapping.isIgnoredClass(className))
-                    )
+            if (null == classDef && (isExcludedClass(className, mapping) || mapping.skipPlatformClasses && isPlatformClassLoader(loader))) {
+                if (mapping.logEveryClass) {
+                    System.out.println(", excluded");
+                }
+
                 return null;
+            }
 
             if (null == classDef && mapping.isMappedClass(className)) {
                 if (mapping.logEveryClass) {
@@ -186,87 +254,102 @@ class ClassFileTransformer implements java.lang.instrument.ClassFileTransformer
                 return null;
             }
 
-            if (mapping.logEveryClass) {
-                System.out.print(", Creating ClassReader ");
-            }
-
-            final ClassReader cr = new ClassReader(classfileBuffer);
-
-            if (mapping.useQuickScan && null == classDef/* Use QuickScan only if not src/dst class */) {
-                QuickScanClassVisitor scanner = QuickScanClassVisitor.findVt(cr, mapping);
-                if (!scanner.foundVType()) {
+            if (null == classDef && null != preTransformer && null != className) {
+                byte[] data = preTransformer.take(className, classfileBuffer);
+                if (null != data) {
+                    boolean transformed = PreTransformer.isTransformed(data);
                     if (mapping.logEveryClass) {
-                        System.out.print(", VType NOT Found! ");
+                        System.out.print(", transformed ahead of time ");
                     }
 
-//                    if (null == className) {
-//                        // Log all anon classes for research
-//                        dumpClassData("$anon$/", className, classfileBuffer);
-//                    }
+                    if (transformed && null != mapping.classDumpPath) {
+                        dumpClassData(className, data);
+                    }
 
-                    return null;
+                    return transformed ? data : null;
                 }
-
-                // Debug code
-//            if (scanner.foundVType()) {
-//                if (mapping.logEveryClass) {
-//                    System.out.printf("VT Agent: Skipping (for debug) class: %s%n", classPath);
-//                }
-//
-//                return null;
-//            }
             }
 
-            if (mapping.logEveryClass) {
-                System.out.println(", VType Found !");
+            if (null == classDef && null != codeSourceScanner && null != className && codeSourceScanner.isClean(protectionDomain, className)) {
+                if (mapping.logEveryClass) {
+                    System.out.print(", jar doesn't reference Value Types ");
+                }
+
+                return null;
             }
 
+            if (null == classDef && null != usageIndex && null != className && usageIndex.isUnchanged(className, classfileBuffer)) {
+                if (mapping.logEveryClass) {
+                    System.out.print(", listed as unchanged in usage index ");
+                }
 
-            // Will recompute local var & stack sizes
-            // Our Class Visitor will remap frames itself, because ASM Frame remapping is not always able to pull class
-            // inheritance tree leading to skipped classes. Also it is slower due to being more general.
-            ClassWriter cw = new ClassWriter(cr, COMPUTE_MAXS);
+                return null;
+            }
 
-            // TODO: Finish implementation of additional class verification
-            //ClassVisitor prev = mapping.extraVerification ? new CheckClassAdapter(cw, true) : cw;
-            org.objectweb.asm.ClassVisitor prev = cw;
+            if (null == classDef && null != constantPoolScanner && !constantPoolScanner.mayReferenceValueTypes(classfileBuffer)) {
+                if (mapping.logEveryClass) {
+                    System.out.print(", VType NOT Found in constant pool! ");
+                }
 
-            try {
-                TranslationState state = new TranslationState(className, classDef, mapping);
+                return null;
+            }
 
+            if (null == classDef && TransformedClassMarker.isMarked(classfileBuffer)) {
                 if (mapping.logEveryClass) {
-                    System.out.printf("Start ClassReader for class: %s%n", className);
+                    System.out.print(", already transformed offline ");
                 }
 
-                org.objectweb.asm.ClassVisitor cv = new com.epam.deltix.vtype.transformer.ClassVisitor(ASM9, prev, state);
-                cr.accept(cv, 0);
+                return null;
+            }
+
+            // Transformed classes are cached along with classes left unchanged (as empty entries), src/dst classes are always scanned
+            String cacheKey = null;
+            if (null != classCache && null == classDef) {
+                cacheKey = classCache.keyOf(classfileBuffer);
+                byte[] cached = classCache.get(cacheKey);
+                if (null != cached) {
+                    boolean transformed = ClassCache.isTransformed(cached);
+                    if (mapping.logEveryClass || mapping.logSuccesses && transformed) {
+                        System.out.printf("VT Agent: Will %srewrite class: %s (cached)%n", transformed ? "" : "NOT ", className);
+                    }
 
-                boolean transformed = state.classWasTransformed;
-                if (mapping.logEveryClass || mapping.logSuccesses && transformed) {
-                    System.out.printf("VT Agent: Will %srewrite class: %s%n", transformed ? "" : "NOT ", className);
+                    return transformed ? cached : null;
                 }
+            }
 
-                // Debug code that tries to avoid parallel processing of classes
-//                if (transformed) {
-//                    if (!firstFullTransformTransformOccured) {
-//                        assert(firstFullTransform.availablePermits() == 0);
-//                        firstFullTransformTransformOccured = true;
-//                        firstFullTransform.release();
-//                        System.out.println();
-//                        System.out.println("VT Agent: First transformation succeeded for: " + classPath);
-//                    }
-//                }
+            if (mapping.logEveryClass) {
+                System.out.print(", Creating ClassReader ");
+            }
 
-                if (transformed) {
-                    byte[] data = cw.toByteArray();
-                    if (null != mapping.classDumpPath) {
-                        dumpClassData(className, data);
-                    }
+            final ClassReader cr = new ClassReader(classfileBuffer);
+            QuickScanClassVisitor scanResult = quickScan(cr, classDef, mapping);
+            if (!mayUseValueTypes(scanResult, mapping))
+                return null;
 
-                    return data;
+            if (null != valueTypeStates && null == classDef && !loadReferencedValueTypes(classfileBuffer, loader)) {
+                if (mapping.logEveryClass) {
+                    System.out.println(", referenced Value Type is not initialized, NOT transformed");
                 }
 
                 return null;
+            }
+
+            try {
+                byte[] data = transformClass(cr, className, classDef, mapping, null, scanResult);
+                // Not reached if a referenced Value Type is not initialized, such results are never cached
+                if (null != cacheKey) {
+                    classCache.put(cacheKey, data);
+                }
+
+                if (null != data && null != mapping.classDumpPath) {
+                    dumpClassData(className, data);
+                }
+
+                if (null != data && null != preTransformer) {
+                    preTransformer.onTransformed(className);
+                }
+
+                return data;
             } catch (Throwable e) {
 
                 if (e instanceof MethodException) {
@@ -309,6 +392,152 @@ class ClassFileTransformer implements java.lang.instrument.ClassFileTransformer
         return null;
     }
 
+    // Skip classes excluded by the config, and some classes we are obviously not going to process
+    static boolean isExcludedClass(String className, Mapping mapping) {
+
+        return null != className && mapping.isIgnoredClass(className);
+    }
+
+    // JDK classes are loaded by the bootstrap (null) or platform (extension, for Java 8) class loader
+    static boolean isPlatformClassLoader(ClassLoader loader) {
+
+        return null == loader || loader == platformClassLoader;
+    }
+
+    private static ClassLoader findPlatformClassLoader() {
+
+        ClassLoader systemLoader = ClassLoader.getSystemClassLoader();
+        ClassLoader loader = systemLoader;
+        while (null != loader && null != loader.getParent()) {
+            loader = loader.getParent();
+        }
+
+        return loader != systemLoader ? loader : null;
+    }
+
+    /**
+     * @return QuickScan results, or null if QuickScan is not used for this class
+     */
+    static QuickScanClassVisitor quickScan(ClassReader cr, ClassDef classDef, Mapping mapping) {
+
+        // Use QuickScan only if not src/dst class
+        if (!mapping.useQuickScan || null != classDef)
+            return null;
+
+        return QuickScanClassVisitor.findVt(cr, mapping);
+    }
+
+    static boolean mayUseValueTypes(QuickScanClassVisitor scanResult, Mapping mapping) {
+
+        if (null == scanResult)
+            return true;
+
+        if (!scanResult.foundVType()) {
+            if (mapping.logEveryClass) {
+                System.out.print(", VType NOT Found! ");
+            }
+
+            return false;
+        }
+
+        if (mapping.logEveryClass) {
+            System.out.println(", VType Found !");
+        }
+
+        return true;
+    }
+
+    /**
+     * Transform a single class, or scan it if it is a src/dst Value Type class (classDef is not null)
+     * @return transformed class or null if it is not modified
+     */
+    static byte[] transformClass(ClassReader cr, String className, ClassDef classDef, Mapping mapping) {
+        return transformClass(cr, className, classDef, mapping, null, null);
+    }
+
+    /**
+     * @param scanResult QuickScan results, that tell which methods use Value Types.
+     *                   If null, every method is scanned before the transformation
+     */
+    static byte[] transformClass(ClassReader cr, String className, ClassDef classDef, Mapping mapping,
+                                 WarningListener warningListener, QuickScanClassVisitor scanResult) {
+        return transformClass(cr, className, classDef, mapping, warningListener, scanResult, false);
+    }
+
+    /**
+     * @param markTransformed add {@link TransformedClassMarker} attribute to the transformed class
+     */
+    static byte[] transformClass(ClassReader cr, String className, ClassDef classDef, Mapping mapping,
+                                 WarningListener warningListener, QuickScanClassVisitor scanResult, boolean markTransformed) {
+
+        Set<String> vtMethods = null;
+        if (null != scanResult) {
+            scanResult.checkValueTypes();
+            vtMethods = scanResult.getTransformedMethods();
+        }
+
+        // Local var & stack sizes of the transformed methods are computed by MethodNode, unchanged methods keep theirs.
+        // ASM computation is only used for extra verification and for old class files, that may contain JSR/RET
+        // Our Class Visitor will remap frames itself, because ASM Frame remapping is not always able to pull class
+        // inheritance tree leading to skipped classes. Also it is slower due to being more general.
+        int flags = mapping.extraVerification || cr.readUnsignedShort(6) < V1_7 ? COMPUTE_MAXS : 0;
+        ClassWriter cw = new ClassWriter(cr, flags);
+
+        // TODO: Finish implementation of additional class verification
+        //ClassVisitor prev = mapping.extraVerification ? new CheckClassAdapter(cw, true) : cw;
+        org.objectweb.asm.ClassVisitor prev = cw;
+
+        TranslationState state = acquireState(className, classDef, mapping);
+        state.warningListener = warningListener;
+        state.vtMethods = vtMethods;
+        state.markTransformed = markTransformed;
+        state.parallelMethods = 0 != mapping.parallelMethodsThreshold
+                && null != vtMethods && vtMethods.size() >= mapping.parallelMethodsThreshold;
+
+        if (mapping.logEveryClass) {
+            System.out.printf("Start ClassReader for class: %s%n", className);
+        }
+
+        boolean transformed;
+        try {
+            org.objectweb.asm.ClassVisitor cv = new com.epam.deltix.vtype.transformer.ClassVisitor(ASM9, prev, state);
+            cr.accept(cv, 0);
+            transformed = state.classWasTransformed;
+        } catch (RuntimeException | Error e) {
+            // State may be left inconsistent, don't reuse it
+            cachedState.remove();
+            throw e;
+        } finally {
+            state.inUse = false;
+        }
+
+        if (mapping.logEveryClass || mapping.logSuccesses && transformed) {
+            System.out.printf("VT Agent: Will %srewrite class: %s%n", transformed ? "" : "NOT ", className);
+        }
+
+        return transformed ? cw.toByteArray() : null;
+    }
+
+    /**
+     * @return TranslationState cached for the current thread, reset for the new class.
+     * A new instance is created for the first class, for a different mapping, or if transform() is reentered
+     */
+    private static TranslationState acquireState(String className, ClassDef classDef, Mapping mapping) {
+
+        TranslationState state = cachedState.get();
+        if (null == state || state.mapping != mapping) {
+            state = new TranslationState(className, classDef, mapping);
+            cachedState.set(state);
+        } else if (state.inUse) {
+            state = new TranslationState(className, classDef, mapping);
+        } else {
+            state.reset(className, classDef);
+        }
+
+        state.inUse = true;
+        return state;
+    }
+
     private void dumpClassData(String className, byte[] data) {
         dumpClassData("", className, data);
     }
@@ -360,6 +589,11 @@ class ClassFileTransformer implements java.lang.instrument.ClassFileTransformer
     // verify its signatures, etc.
     public void readClasses() {
 
+        if (readSnapshot(ClassLoader.getSystemClassLoader()) || isLazy()) {
+            onClassesRead(ClassLoader.getSystemClassLoader());
+            return;
+        }
+
         try {
             System.out.println("Begin scanning transformed classes (and loading dependencies)");
             mapping.loadClasses(currentlyLoadedClass, currentClassDef);
@@ -368,8 +602,173 @@ class ClassFileTransformer implements java.lang.instrument.ClassFileTransformer
             e.printStackTrace();
         }
 
-        synchronized (lockObj) {
-            initialized = true;
+        onClassesRead(ClassLoader.getSystemClassLoader());
+    }
+
+    /**
+     * Same as readClasses(), but Value Type class files are read from the specified class loader resources
+     * and passed to transform() directly, as if loaded by the JVM. Used when not running as an agent (benchmarks, tools)
+     */
+    void readClasses(final ClassLoader classLoader) throws Exception {
+
+        if (readSnapshot(classLoader) || isLazy()) {
+            onClassesRead(classLoader);
+            return;
+        }
+
+        try {
+            mapping.loadClasses(new Mapping.ClassDefLoader() {
+                @Override
+                public void load(ClassDef classDef, String classPath) throws Exception {
+                    byte[] data;
+                    try (InputStream in = classLoader.getResourceAsStream(classPath + ".class")) {
+                        if (null == in)
+                            throw new ClassNotFoundException(classPath);
+
+                        data = OfflineTransformer.readFully(in);
+                    }
+
+                    currentClassDef.set(classDef);
+                    transform(classLoader, classPath, null, null, data);
+                }
+            }, classLoader);
+        } finally {
+            currentClassDef.set(null);
+        }
+
+        onClassesRead(classLoader);
+    }
+
+    private void onClassesRead(ClassLoader classLoader) {
+
+        if (null != preTransformer) {
+            preTransformer.start(classLoader);
+        }
+
+        initialized = true;
+    }
+
+    /**
+     * Transform a class that is not loaded yet, same way transform() would
+     * @return transformed class, or null if the class is left unchanged
+     */
+    byte[] transformAhead(String className, byte[] classfileBuffer, ClassLoader loader) {
+
+        if (isExcludedClass(className, mapping) || mapping.isMappedClass(className))
+            return null;
+
+        if (null != constantPoolScanner && !constantPoolScanner.mayReferenceValueTypes(classfileBuffer))
+            return null;
+
+        if (TransformedClassMarker.isMarked(classfileBuffer))
+            return null;
+
+        ClassReader cr = new ClassReader(classfileBuffer);
+        QuickScanClassVisitor scanResult = quickScan(cr, null, mapping);
+        if (!mayUseValueTypes(scanResult, mapping))
+            return null;
+
+        if (null != valueTypeStates && !loadReferencedValueTypes(classfileBuffer, loader))
+            return null;
+
+        return transformClass(cr, className, null, mapping, null, scanResult);
+    }
+
+    private boolean isLazy() {
+
+        if (null == valueTypeStates)
+            return false;
+
+        System.out.println("VT Agent: Lazy initialization, Value Type classes will be loaded when first used");
+        return true;
+    }
+
+    /**
+     * Lazy initialization: load Value Type classes the transformed class refers to, if not loaded yet
+     * @return false if some of them are not initialized (failed to load, or still loading on this thread),
+     * such class can't be transformed
+     */
+    private boolean loadReferencedValueTypes(byte[] classfileBuffer, ClassLoader loader) {
+
+        BitSet referenced = new BitSet();
+        if (!valueTypeScanner.findPatterns(classfileBuffer, referenced)) {
+            referenced.set(0, mapping.numClasses());
+        }
+
+        for (int i = referenced.nextSetBit(0); i >= 0; i = referenced.nextSetBit(i + 1)) {
+            if (VT_DONE != valueTypeStates.get(i)) {
+                loadValueType(i, null != loader ? loader : ClassLoader.getSystemClassLoader());
+            }
+        }
+
+        for (int i = referenced.nextSetBit(0); i >= 0; i = referenced.nextSetBit(i + 1)) {
+            if (!mapping.getClassDef(i).isInitialized())
+                return false;
+        }
+
+        return true;
+    }
+
+    // Class files of src/dst classes are read as resources and scanned directly, only the dst class is actually loaded
+    // to obtain the NULL constant. Failed classes are not retried. If loading the dst class leads to loading a class
+    // that uses the same Value Type on the same thread, the Value Type is not yet initialized and that class is left
+    // unchanged.
+    private synchronized void loadValueType(int index, final ClassLoader classLoader) {
+
+        if (0 != valueTypeStates.get(index))
+            return;
+
+        valueTypeStates.set(index, VT_LOADING);
+        ClassDef classDef = mapping.getClassDef(index);
+        try {
+            mapping.loadClass(new Mapping.ClassDefLoader() {
+                @Override
+                public void load(ClassDef classDef, String classPath) throws Exception {
+                    byte[] data;
+                    try (InputStream in = classLoader.getResourceAsStream(classPath + ".class")) {
+                        if (null == in)
+                            throw new ClassNotFoundException(classPath);
+
+                        data = OfflineTransformer.readFully(in);
+                    }
+
+                    transformClass(new ClassReader(data), classPath, classDef, mapping);
+                }
+            }, classDef, classLoader);
+
+            if (mapping.logSuccesses || mapping.logEveryClass) {
+                System.out.printf("VT Agent: Value Type class loaded: %s%n", classDef.getSrcClassPath());
+            }
+        } catch (Throwable e) {
+            System.err.printf("VT Agent: FAILED to load Value Type class: %s%n", classDef.getSrcClassPath());
+            e.printStackTrace();
+        } finally {
+            valueTypeStates.set(index, VT_DONE);
+        }
+    }
+
+    /**
+     * Initialize Value Type classes from the mapping snapshot, if configured and built for the same
+     * agent version, config and Value Type classes
+     * @param classLoader used to read class files of Value Type classes to compute the fingerprint
+     * @return false if full discovery of Value Type classes is still needed
+     */
+    private boolean readSnapshot(ClassLoader classLoader) {
+
+        if (null == mapping.mappingSnapshotPath)
+            return false;
+
+        try {
+            if (MappingSnapshot.read(mapping, MappingFingerprint.compute(mapping, classLoader), new File(mapping.mappingSnapshotPath))) {
+                System.out.printf("VT Agent: Mapping snapshot loaded. %d classes will be transformed.%n", mapping.numLoadedClasses());
+                return true;
+            }
+
+            System.out.printf("VT Agent: Mapping snapshot is missing or outdated: %s%n", mapping.mappingSnapshotPath);
+        } catch (Exception e) {
+            System.err.printf("VT Agent: WARNING: Failed to read mapping snapshot: %s%n", e);
         }
+
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -24,7 +24,9 @@ import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Set;
 
 import static org.objectweb.asm.Opcodes.ACC_STATIC;
 
@@ -41,6 +43,8 @@ public class ClassVisitor extends org.objectweb.asm.ClassVisitor {
     boolean isClassTransformed   /*mapping.verifyAllMethods */;
     boolean printEndOfProcessingMessage = false;
     private HashSet<String> transformedSetters = new HashSet<>();
+    // Methods transformed on the pool, in the original order. null unless state.parallelMethods is set
+    private ArrayList<ParallelMethodTransformer.DeferredMethod> deferredMethods;
 
     public ClassVisitor(final int api, final org.objectweb.asm.ClassVisitor cv, TranslationState state) {
         super(api, cv);
@@ -109,9 +113,55 @@ public class ClassVisitor extends org.objectweb.asm.ClassVisitor {
             transformedSetters.add(makeSetterSignature(name, desc));
         }
 
+        if (isVtFreeMethod(name, desc)) {
+            // Returning ClassWriter's own visitor lets it copy the method bytes as is
+            return super.visitMethod(access, name, desc, signature, exceptions);
+        }
+
+        if (state.parallelMethods)
+            return deferMethod(access, name, desc, signature, exceptions);
+
         return new MethodNode(state, access, name, desc, signature, exceptions, cv);
     }
 
+    /**
+     * Reserve the method in the output class and record it to be transformed on the pool
+     */
+    private MethodVisitor deferMethod(int access, String name, String desc, String signature, String[] exceptions) {
+
+        String newName = name, newDesc = desc;
+        if (DescriptorParser.findVtInMethodDesc(desc, mapping)) {
+            newName = MethodNode.transformedName(state, access, name, desc);
+            newDesc = getTransformedDesc(desc);
+        }
+
+        MethodVisitor mv = super.visitMethod(access, newName, newDesc, signature, exceptions);
+        ParallelMethodTransformer.DeferredMethod method =
+                new ParallelMethodTransformer.DeferredMethod(state, access, name, desc, signature, exceptions, mv);
+
+        if (null == deferredMethods) {
+            deferredMethods = new ArrayList<>();
+        }
+
+        deferredMethods.add(method);
+        return method;
+    }
+
+    /**
+     * @return true if QuickScan found no Value Types in the method and no VT field initialization code is needed,
+     * so the method doesn't need to be transformed
+     */
+    private boolean isVtFreeMethod(String name, String desc) {
+
+        Set<String> vtMethods = state.vtMethods;
+        if (null == vtMethods || mapping.verifyAllMethods
+                || vtMethods.contains(name + desc) || DescriptorParser.findVtInMethodDesc(desc, mapping))
+            return false;
+
+        boolean isClInit = name.equals("<clinit>");
+        return !(isClInit || name.equals("<init>")) || !state.hasScalarVtFields(isClInit ? 1 : 0);
+    }
+
     private static String makeSetterSignature(String name, String desc) {
         return name + desc.substring(0, desc.indexOf(')') + 1);
     }
@@ -185,6 +235,16 @@ public class ClassVisitor extends org.objectweb.asm.ClassVisitor {
 
     @Override
     public void visitEnd() {
+        if (null != deferredMethods) {
+            for (ParallelMethodTransformer.DeferredMethod method : deferredMethods) {
+                method.writeTo();
+            }
+        }
+
+        if (state.markTransformed && state.classWasTransformed) {
+            super.visitAttribute(new TransformedClassMarker());
+        }
+
         super.visitEnd();
         if (printEndOfProcessingMessage || mapping.logEveryClass) {
             System.out.println("VT Agent: END processing class: " + className);
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Remembers jars that don't reference any Value Type. When the first class is loaded from a jar, constant pools
+ * of all its classes are scanned, and if none of them may reference Value Types, all later classes from the same jar
+ * are rejected without scanning them.
+ * <p>
+ * A class is only rejected if its name is found in the jar, so classes generated at runtime with the same
+ * CodeSource are still scanned. Each jar is scanned once, concurrent callers wait for the result. Replacing the jar
+ * file invalidates the verdict, clean jars are checked for that at most once per second.
+ */
+final class CodeSourceScanner {
+    private static final String CLASS_EXT = ".class";
+    private static final String VERSIONS_DIR = "META-INF/versions/";
+    private static final long CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConstantPoolScanner constantPoolScanner;
+    private final boolean logJars;
+    // Jar file path -> verdict
+    private final ConcurrentHashMap<String, FutureTask<JarInfo>> jars = new ConcurrentHashMap<>();
+
+    private static final class JarInfo {
+        final File file;
+        final long lastModified;
+        final long length;
+        final Set<String> classNames;  // null if the jar may reference Value Types
+        private volatile long nextCheckTime;
+
+        JarInfo(File file, long lastModified, long length, Set<String> classNames) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.classNames = classNames;
+            this.nextCheckTime = System.nanoTime() + CHECK_INTERVAL_NANOS;
+        }
+
+        // Touches the file system at most once per CHECK_INTERVAL_NANOS, assumes the jar is unchanged in between
+        boolean isUpToDate() {
+            long now = System.nanoTime();
+            if (now - nextCheckTime < 0)
+                return true;
+
+            nextCheckTime = now + CHECK_INTERVAL_NANOS;
+            return lastModified == file.lastModified() && length == file.length();
+        }
+    }
+
+    CodeSourceScanner(ConstantPoolScanner constantPoolScanner, boolean logJars) {
+        this.constantPoolScanner = constantPoolScanner;
+        this.logJars = logJars;
+    }
+
+    /**
+     * @return true if the class was loaded from a jar that doesn't reference Value Types
+     */
+    boolean isClean(ProtectionDomain protectionDomain, String className) {
+
+        if (null == protectionDomain)
+            return false;
+
+        CodeSource codeSource = protectionDomain.getCodeSource();
+        URL location = null != codeSource ? codeSource.getLocation() : null;
+        if (null == location || !"file".equals(location.getProtocol()))
+            return false;
+
+        String path = location.getPath();
+        if (!path.endsWith(".jar"))
+            return false;
+
+        FutureTask<JarInfo> task = jars.get(path);
+        if (null == task) {
+            task = scanOnce(location, null);
+        }
+
+        JarInfo jar = getResult(task);
+        // A jar that may reference Value Types is never rejected, so only the clean ones have to be checked
+        if (null != jar && null != jar.classNames && !jar.isUpToDate()) {
+            jar = getResult(scanOnce(location, task));
+        }
+
+        return null != jar && null != jar.classNames && jar.classNames.contains(className);
+    }
+
+    /**
+     * Scans the jar, unless another thread already started doing that
+     * @param stale outdated task to replace, or null if the jar was not scanned yet
+     * @return task that produces the current verdict for this jar
+     */
+    private FutureTask<JarInfo> scanOnce(URL location, FutureTask<JarInfo> stale) {
+
+        String path = location.getPath();
+        File file;
+        try {
+            file = new File(location.toURI());
+        } catch (Exception e) {
+            file = new File(path);
+        }
+
+        final File jarFile = file;
+        FutureTask<JarInfo> task = new FutureTask<>(new Callable<JarInfo>() {
+            @Override
+            public JarInfo call() {
+                return scan(jarFile);
+            }
+        });
+
+        if (null == stale) {
+            FutureTask<JarInfo> existing = jars.putIfAbsent(path, task);
+            if (null != existing)
+                return existing;
+        } else if (!jars.replace(path, stale, task)) {
+            return jars.get(path);
+        }
+
+        task.run();
+        return task;
+    }
+
+    private static JarInfo getResult(FutureTask<JarInfo> task) {
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.err.printf("VT Agent: WARNING: Unable to scan jar: %s%n", e.getCause());
+            return null;
+        }
+    }
+
+    private JarInfo scan(File file) {
+
+        long lastModified = file.lastModified();
+        long length = file.length();
+        Set<String> classNames = new HashSet<>();
+        try (ZipFile zip = new ZipFile(file)) {
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                ZipEntry entry = e.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || !name.endsWith(CLASS_EXT))
+                    continue;
+
+                byte[] data;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    data = OfflineTransformer.readFully(in);
+                }
+
+                if (constantPoolScanner.mayReferenceValueTypes(data)) {
+                    if (logJars) {
+                        System.out.printf("VT Agent: Jar may reference Value Types (%s): %s%n", name, file);
+                    }
+
+                    return new JarInfo(file, lastModified, length, null);
+                }
+
+                if (name.startsWith(VERSIONS_DIR)) {
+                    // Multi-release jar: META-INF/versions/<n>/<class path>
+                    name = name.substring(name.indexOf('/', VERSIONS_DIR.length()) + 1);
+                }
+
+                classNames.add(name.substring(0, name.length() - CLASS_EXT.length()));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.printf("VT Agent: WARNING: Unable to scan jar %s: %s%n", file, e);
+            return new JarInfo(file, lastModified, length, null);
+        }
+
+        if (logJars) {
+            System.out.printf("VT Agent: Jar doesn't reference Value Types (%d classes): %s%n", classNames.size(), file);
+        }
+
+        return new JarInfo(file, lastModified, length, classNames);
+    }
+}
@@ -19,13 +19,13 @@ package com.epam.deltix.vtype.transformer;
 import com.epam.deltix.vtype.mapping.ClassDef;
 import com.epam.deltix.vtype.mapping.Mapping;
 import com.epam.deltix.vtype.mapping.MethodDef;
+import com.epam.deltix.vtype.mapping.MethodMap;
 import com.epam.deltix.vtype.type.*;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
 import java.util.Arrays;
-import java.util.HashMap;
 
 import static org.objectweb.asm.Opcodes.*;
 
@@ -78,6 +78,7 @@ public abstract class CodeTransformerBase extends StackWalkHandler implements Va
 
         this.initializationPatchNode = null;
         this.firstLabel             = null;
+        this.suppressAutoInitInjection = false;
 
         // TODO: only set if there are VT fields
         this.needAutoInitInjectionPoint = isConstructor;
@@ -838,7 +839,7 @@ public abstract class CodeTransformerBase extends StackWalkHandler implements Va
 
     boolean tryTransformAsVTypeMethodCall(MethodInsnNode node, String name, String owner, String desc) {
         // Is this method a registered ValueType method?
-        HashMap<Integer, MethodDef> vtypeMethodMap = mapping.getMethodMap(owner);
+        MethodMap vtypeMethodMap = mapping.getMethodMap(owner);
         if (null != vtypeMethodMap) {
             // NOTE: Names of ValueType class methods or VT utility methods are not themselves transformed
             MethodDef m = Mapping.getMethod(vtypeMethodMap, name, desc);
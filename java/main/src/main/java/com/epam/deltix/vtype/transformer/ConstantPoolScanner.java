@@ -0,0 +1,286 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.Mapping;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Checks if a class file may reference Value Types without parsing it, by searching CONSTANT_Utf8 entries of the
+ * constant pool for Value Type class paths (and the names of the annotations QuickScan reacts to).
+ * Any descriptor, signature or class reference that mentions a Value Type must contain its class path.
+ * <p>
+ * Uses Aho-Corasick automaton over modified UTF-8 bytes, compiled into a DFA with compressed alphabet.
+ * False positives are possible (and are then rejected by QuickScan), false negatives are not.
+ * Immutable, thread safe, does not allocate memory while scanning.
+ */
+final class ConstantPoolScanner {
+    // These annotations make QuickScan report the class as "found"
+    private static final String[] annotationPatterns = { "ValueTypeTrace;", "ValueTypeDebug;", "ValueTypeIgnore;" };
+
+    private final byte[] alphabet = new byte[0x100];    // byte -> symbol index, 0 for bytes not used by any pattern
+    private final int alphabetSize;
+    private final int[] transitions;                    // [state * alphabetSize + symbol] -> state
+    private final boolean[] accepting;
+    private final int[] patternIndex;                   // Index of the pattern ending in the state, or -1
+    private final int[] outputLink;                     // Nearest state on the failure path with a pattern ending in it, or -1
+
+
+    /**
+     * @return scanner for the Value Types in the mapping, or null if the pre-scan is disabled
+     */
+    static ConstantPoolScanner forMapping(Mapping mapping) {
+
+        if (!mapping.useQuickScan || !mapping.useConstantPoolScan)
+            return null;
+
+        List<String> patterns = new ArrayList<>(mapping.numClasses() + annotationPatterns.length);
+        for (int i = 0, n = mapping.numClasses(); i < n; ++i) {
+            patterns.add(mapping.getClassDef(i).getSrcClassPath());
+        }
+
+        patterns.addAll(Arrays.asList(annotationPatterns));
+        return new ConstantPoolScanner(patterns);
+    }
+
+
+    ConstantPoolScanner(List<String> patterns) {
+
+        List<byte[]> encoded = new ArrayList<>(patterns.size());
+        int maxStates = 1;
+        int numSymbols = 1;
+        for (String pattern : patterns) {
+            byte[] bytes = toModifiedUtf8(pattern);
+            encoded.add(bytes);
+            maxStates += bytes.length;
+            for (byte b : bytes) {
+                if (0 == alphabet[b & 0xFF]) {
+                    alphabet[b & 0xFF] = (byte) numSymbols++;
+                }
+            }
+        }
+
+        if (numSymbols > 0x80)
+            throw new IllegalArgumentException("Too many distinct characters in Value Type class names");
+
+        int m = alphabetSize = numSymbols;
+        int[] next = new int[maxStates * m];
+        boolean[] accepting = new boolean[maxStates];
+        int[] patternIndex = new int[maxStates];
+        Arrays.fill(patternIndex, -1);
+
+        // Build trie, state 0 is the root, -1 marks missing edges
+        Arrays.fill(next, -1);
+        int numStates = 1;
+        for (int p = 0; p < encoded.size(); ++p) {
+            byte[] bytes = encoded.get(p);
+            int state = 0;
+            for (byte b : bytes) {
+                int i = state * m + alphabet[b & 0xFF];
+                if (next[i] < 0) {
+                    next[i] = numStates++;
+                }
+
+                state = next[i];
+            }
+
+            accepting[state] = true;
+            if (patternIndex[state] < 0) {
+                patternIndex[state] = p;
+            }
+        }
+
+        // Resolve failure links breadth-first, turning the trie into DFA
+        int[] fail = new int[numStates];
+        int[] outputLink = new int[numStates];
+        outputLink[0] = -1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int s = 0; s < m; ++s) {
+            int child = next[s];
+            if (child < 0) {
+                next[s] = 0;
+            } else {
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            accepting[state] |= accepting[fail[state]];
+            outputLink[state] = patternIndex[fail[state]] >= 0 ? fail[state] : outputLink[fail[state]];
+            for (int s = 0; s < m; ++s) {
+                int i = state * m + s;
+                int child = next[i];
+                if (child < 0) {
+                    next[i] = next[fail[state] * m + s];
+                } else {
+                    fail[child] = next[fail[state] * m + s];
+                    queue.add(child);
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(next, numStates * m);
+        this.accepting = Arrays.copyOf(accepting, numStates);
+        this.patternIndex = Arrays.copyOf(patternIndex, numStates);
+        this.outputLink = Arrays.copyOf(outputLink, numStates);
+    }
+
+
+    /**
+     * @return false if the class definitely does not reference any Value Type. true if it may, or if the class file
+     * could not be parsed (will be handled by the full parser later)
+     */
+    boolean mayReferenceValueTypes(byte[] classFile) {
+        return scan(classFile, null);
+    }
+
+
+    /**
+     * Find all patterns present in the constant pool
+     * @param found receives indices of the found patterns, in the order they were passed to the constructor
+     * @return false if the class file could not be parsed, and any pattern may be referenced
+     */
+    boolean findPatterns(byte[] classFile, BitSet found) {
+        return !scan(classFile, found);
+    }
+
+
+    // Returns true if stopped early: on parse error or, if not collecting, on the first match
+    private boolean scan(byte[] classFile, BitSet found) {
+
+        byte[] b = classFile;
+        int n = b.length;
+        if (n < 10)
+            return true;
+
+        int count = readU2(b, 8);
+        int i = 10;
+        for (int entry = 1; entry < count; ++entry) {
+            if (i >= n)
+                return true;
+
+            switch (b[i]) {
+                case 1:     // Utf8
+                    if (i + 3 > n)
+                        return true;
+
+                    int end = i + 3 + readU2(b, i + 1);
+                    if (end > n)
+                        return true;
+
+                    if (matches(b, i + 3, end, found))
+                        return true;
+
+                    i = end;
+                    break;
+
+                case 7:     // Class
+                case 8:     // String
+                case 16:    // MethodType
+                case 19:    // Module
+                case 20:    // Package
+                    i += 3;
+                    break;
+
+                case 15:    // MethodHandle
+                    i += 4;
+                    break;
+
+                case 3:     // Integer
+                case 4:     // Float
+                case 9:     // Fieldref
+                case 10:    // Methodref
+                case 11:    // InterfaceMethodref
+                case 12:    // NameAndType
+                case 17:    // Dynamic
+                case 18:    // InvokeDynamic
+                    i += 5;
+                    break;
+
+                case 5:     // Long
+                case 6:     // Double
+                    i += 9;
+                    ++entry;
+                    break;
+
+                default:
+                    // Unknown constant pool entry, can't continue
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    private boolean matches(byte[] b, int from, int to, BitSet found) {
+
+        final byte[] alphabet = this.alphabet;
+        final int[] transitions = this.transitions;
+        final boolean[] accepting = this.accepting;
+        final int m = alphabetSize;
+        int state = 0;
+        for (int i = from; i < to; ++i) {
+            state = transitions[state * m + alphabet[b[i] & 0xFF]];
+            if (accepting[state]) {
+                if (null == found)
+                    return true;
+
+                for (int s = patternIndex[state] >= 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+                    found.set(patternIndex[s]);
+                }
+            }
+        }
+
+        return false;
+    }
+
+
+    private static int readU2(byte[] b, int i) {
+        return (b[i] & 0xFF) << 8 | b[i + 1] & 0xFF;
+    }
+
+
+    // Class file strings are stored in modified UTF-8 encoding
+    static byte[] toModifiedUtf8(String s) {
+
+        byte[] out = new byte[s.length() * 3];
+        int j = 0;
+        for (int i = 0, n = s.length(); i < n; ++i) {
+            char ch = s.charAt(i);
+            if (ch != 0 && ch < 0x80) {
+                out[j++] = (byte) ch;
+            } else if (ch < 0x800) {
+                out[j++] = (byte) (0xC0 | ch >> 6);
+                out[j++] = (byte) (0x80 | ch & 0x3F);
+            } else {
+                out[j++] = (byte) (0xE0 | ch >> 12);
+                out[j++] = (byte) (0x80 | ch >> 6 & 0x3F);
+                out[j++] = (byte) (0x80 | ch & 0x3F);
+            }
+        }
+
+        return Arrays.copyOf(out, j);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.ClassDef;
+import com.epam.deltix.vtype.mapping.Mapping;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Identifies everything the result of a class transformation depends on, besides the class itself:
+ * agent version, config file contents and bytecode of all Value Type src/dst classes.
+ * Class bytes are read as resources, so the fingerprint can be computed before any Value Type class is loaded.
+ */
+final class MappingFingerprint {
+
+    private MappingFingerprint() {}
+
+    static String compute(Mapping mapping, ClassLoader loader) throws IOException {
+
+        MessageDigest md = newDigest();
+        byte[] buffer = new byte[0x2000];
+
+        update(md, Version.version);
+        String configPath = mapping.getConfigFilePath();
+        if (null != configPath) {
+            try (InputStream in = new FileInputStream(configPath)) {
+                update(md, in, buffer);
+            }
+        }
+
+        for (int i = 0, n = mapping.numClasses(); i < n; ++i) {
+            ClassDef cl = mapping.getClassDef(i);
+            updateWithClass(md, cl.getSrcClassPath(), loader, buffer);
+            updateWithClass(md, cl.getDstClassPath(), loader, buffer);
+        }
+
+        return toHex(md.digest());
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] data) {
+
+        char[] out = new char[data.length * 2];
+        for (int i = 0; i < data.length; ++i) {
+            int x = data[i];
+            out[2 * i] = Character.forDigit((x >> 4) & 0xF, 16);
+            out[2 * i + 1] = Character.forDigit(x & 0xF, 16);
+        }
+
+        return new String(out);
+    }
+
+    private static void updateWithClass(MessageDigest md, String classPath, ClassLoader loader, byte[] buffer) throws IOException {
+
+        update(md, classPath);
+        InputStream in = null != loader ? loader.getResourceAsStream(classPath + ".class") : null;
+        if (null == in) {
+            // Missing class is a valid state, that is also a part of the fingerprint
+            md.update((byte)0);
+            return;
+        }
+
+        try {
+            update(md, in, buffer);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void update(MessageDigest md, String s) {
+        md.update(s.getBytes(StandardCharsets.UTF_8));
+        md.update((byte)0);
+    }
+
+    private static void update(MessageDigest md, InputStream in, byte[] buffer) throws IOException {
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            md.update(buffer, 0, n);
+        }
+    }
+}
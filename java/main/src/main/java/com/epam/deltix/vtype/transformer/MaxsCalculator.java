@@ -0,0 +1,317 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Computes exact max stack size and max locals of a transformed method, to avoid running ASM analysis (COMPUTE_MAXS)
+ * in ClassWriter. Stack depth is propagated along the control flow from the method entry and exception handlers,
+ * unreachable code is ignored, same as ASM does. Doesn't support JSR/RET.
+ * Reused for all methods processed by a thread.
+ */
+final class MaxsCalculator {
+    // Stack depth before each instruction, -1 if not reached yet
+    private int[] depth = new int[0x100];
+    // Instruction indices to continue from
+    private int[] pending = new int[0x20];
+    private int numPending;
+    private int maxStack;
+
+    void compute(org.objectweb.asm.tree.MethodNode method) {
+
+        InsnList insns = method.instructions;
+        int n = insns.size();
+        if (depth.length < n) {
+            depth = new int[Math.max(n, 2 * depth.length)];
+        }
+
+        Arrays.fill(depth, 0, n, -1);
+        numPending = 0;
+        maxStack = 0;
+        if (0 != n) {
+            enqueue(0, 0);
+            for (TryCatchBlockNode tcb : method.tryCatchBlocks) {
+                enqueue(insns.indexOf(tcb.handler), 1);
+            }
+
+            while (0 != numPending) {
+                walk(insns, pending[--numPending]);
+            }
+        }
+
+        method.maxStack = maxStack;
+        method.maxLocals = maxLocals(method);
+    }
+
+    /**
+     * Same as compute(), for a method without jumps, switches and exception handlers. Does a single pass
+     * over the instructions, up to the first return or throw, without indexing the instruction list
+     */
+    void computeStraightLine(org.objectweb.asm.tree.MethodNode method) {
+
+        int d = 0, maxStack = 0;
+        for (AbstractInsnNode insn = method.instructions.getFirst(); null != insn; insn = insn.getNext()) {
+            int opcode = insn.getOpcode();
+            if (opcode < 0)
+                continue;
+
+            d += stackDelta(insn, opcode);
+            if (d > maxStack) {
+                maxStack = d;
+            }
+
+            if (opcode >= IRETURN && opcode <= RETURN || ATHROW == opcode)
+                break;
+
+            if (RET == opcode)
+                throw new UnsupportedOperationException("RET is not supported");
+        }
+
+        method.maxStack = maxStack;
+        method.maxLocals = maxLocals(method);
+    }
+
+    private void enqueue(int i, int d) {
+
+        if (-1 != depth[i])
+            return;
+
+        depth[i] = d;
+        if (d > maxStack) {
+            maxStack = d;
+        }
+
+        if (numPending == pending.length) {
+            pending = Arrays.copyOf(pending, 2 * numPending);
+        }
+
+        pending[numPending++] = i;
+    }
+
+    /**
+     * Follow the instructions starting from i, until the control flow stops or reaches already visited instruction
+     */
+    private void walk(InsnList insns, int i) {
+
+        int[] depth = this.depth;
+        int n = insns.size();
+        int d = depth[i];
+        while (true) {
+            AbstractInsnNode insn = insns.get(i);
+            int opcode = insn.getOpcode();
+            if (opcode >= 0) {
+                d += stackDelta(insn, opcode);
+                if (d > maxStack) {
+                    maxStack = d;
+                }
+
+                switch (insn.getType()) {
+                    case AbstractInsnNode.JUMP_INSN:
+                        if (JSR == opcode)
+                            throw new UnsupportedOperationException("JSR is not supported");
+
+                        enqueue(insns.indexOf(((JumpInsnNode) insn).label), d);
+                        if (GOTO == opcode)
+                            return;
+                        break;
+
+                    case AbstractInsnNode.TABLESWITCH_INSN: {
+                        TableSwitchInsnNode sw = (TableSwitchInsnNode) insn;
+                        enqueue(insns, sw.labels, d);
+                        enqueue(insns.indexOf(sw.dflt), d);
+                        return;
+                    }
+
+                    case AbstractInsnNode.LOOKUPSWITCH_INSN: {
+                        LookupSwitchInsnNode sw = (LookupSwitchInsnNode) insn;
+                        enqueue(insns, sw.labels, d);
+                        enqueue(insns.indexOf(sw.dflt), d);
+                        return;
+                    }
+
+                    case AbstractInsnNode.INSN:
+                        if (opcode >= IRETURN && opcode <= RETURN || ATHROW == opcode)
+                            return;
+                        break;
+
+                    case AbstractInsnNode.VAR_INSN:
+                        if (RET == opcode)
+                            throw new UnsupportedOperationException("RET is not supported");
+                        break;
+                }
+            }
+
+            if (++i == n || -1 != depth[i])
+                return;
+
+            depth[i] = d;
+        }
+    }
+
+    private void enqueue(InsnList insns, List<LabelNode> labels, int d) {
+
+        for (int i = 0, n = labels.size(); i < n; ++i) {
+            enqueue(insns.indexOf(labels.get(i)), d);
+        }
+    }
+
+    private static int maxLocals(org.objectweb.asm.tree.MethodNode method) {
+
+        int maxLocals = Type.getArgumentsAndReturnSizes(method.desc) >> 2;
+        if (0 != (method.access & ACC_STATIC)) {
+            --maxLocals;
+        }
+
+        for (AbstractInsnNode insn = method.instructions.getFirst(); null != insn; insn = insn.getNext()) {
+            int top;
+            switch (insn.getType()) {
+                case AbstractInsnNode.VAR_INSN:
+                    int opcode = insn.getOpcode();
+                    top = ((VarInsnNode) insn).var + (LLOAD == opcode || DLOAD == opcode || LSTORE == opcode || DSTORE == opcode ? 2 : 1);
+                    break;
+
+                case AbstractInsnNode.IINC_INSN:
+                    top = ((IincInsnNode) insn).var + 1;
+                    break;
+
+                default:
+                    continue;
+            }
+
+            if (top > maxLocals) {
+                maxLocals = top;
+            }
+        }
+
+        List<LocalVariableNode> vars = method.localVariables;
+        if (null != vars) {
+            for (int i = 0, n = vars.size(); i < n; ++i) {
+                LocalVariableNode var = vars.get(i);
+                int top = var.index + sizeOfDesc(var.desc);
+                if (top > maxLocals) {
+                    maxLocals = top;
+                }
+            }
+        }
+
+        return maxLocals;
+    }
+
+    private static int sizeOfDesc(String desc) {
+
+        char ch = desc.charAt(0);
+        return 'J' == ch || 'D' == ch ? 2 : 'V' == ch ? 0 : 1;
+    }
+
+    private static int invokeDelta(String desc, boolean hasThis) {
+
+        int sizes = Type.getArgumentsAndReturnSizes(desc);
+        // Argument size includes implicit 'this'
+        return (sizes & 3) - (sizes >> 2) + (hasThis ? 0 : 1);
+    }
+
+    /**
+     * @return change of the stack size, in 32-bit cells, after executing the instruction
+     */
+    static int stackDelta(AbstractInsnNode insn, int opcode) {
+
+        switch (opcode) {
+            case NOP: case INEG: case LNEG: case FNEG: case DNEG: case IINC:
+            case I2F: case L2D: case F2I: case D2L: case I2B: case I2C: case I2S:
+            case LALOAD: case DALOAD: case SWAP: case GOTO: case RET: case RETURN:
+            case NEWARRAY: case ANEWARRAY: case ARRAYLENGTH: case CHECKCAST: case INSTANCEOF:
+                return 0;
+
+            case ACONST_NULL: case ICONST_M1: case ICONST_0: case ICONST_1: case ICONST_2: case ICONST_3:
+            case ICONST_4: case ICONST_5: case FCONST_0: case FCONST_1: case FCONST_2: case BIPUSH: case SIPUSH:
+            case ILOAD: case FLOAD: case ALOAD: case DUP: case DUP_X1: case DUP_X2:
+            case I2L: case I2D: case F2L: case F2D: case NEW: case JSR:
+                return 1;
+
+            case LCONST_0: case LCONST_1: case DCONST_0: case DCONST_1: case LLOAD: case DLOAD:
+            case DUP2: case DUP2_X1: case DUP2_X2:
+                return 2;
+
+            case ISTORE: case FSTORE: case ASTORE: case POP:
+            case IALOAD: case FALOAD: case AALOAD: case BALOAD: case CALOAD: case SALOAD:
+            case IADD: case FADD: case ISUB: case FSUB: case IMUL: case FMUL: case IDIV: case FDIV: case IREM: case FREM:
+            case ISHL: case LSHL: case ISHR: case LSHR: case IUSHR: case LUSHR: case IAND: case IOR: case IXOR:
+            case L2I: case L2F: case D2I: case D2F: case FCMPL: case FCMPG:
+            case IFEQ: case IFNE: case IFLT: case IFGE: case IFGT: case IFLE: case IFNULL: case IFNONNULL:
+            case TABLESWITCH: case LOOKUPSWITCH: case IRETURN: case FRETURN: case ARETURN: case ATHROW:
+            case MONITORENTER: case MONITOREXIT:
+                return -1;
+
+            case LSTORE: case DSTORE: case POP2:
+            case LADD: case DADD: case LSUB: case DSUB: case LMUL: case DMUL: case LDIV: case DDIV: case LREM: case DREM:
+            case LAND: case LOR: case LXOR:
+            case IF_ICMPEQ: case IF_ICMPNE: case IF_ICMPLT: case IF_ICMPGE: case IF_ICMPGT: case IF_ICMPLE:
+            case IF_ACMPEQ: case IF_ACMPNE: case LRETURN: case DRETURN:
+                return -2;
+
+            case LCMP: case DCMPL: case DCMPG:
+            case IASTORE: case FASTORE: case AASTORE: case BASTORE: case CASTORE: case SASTORE:
+                return -3;
+
+            case LASTORE: case DASTORE:
+                return -4;
+
+            case LDC: {
+                Object cst = ((LdcInsnNode) insn).cst;
+                if (cst instanceof Long || cst instanceof Double)
+                    return 2;
+
+                return cst instanceof ConstantDynamic ? ((ConstantDynamic) cst).getSize() : 1;
+            }
+
+            case GETSTATIC:
+                return sizeOfDesc(((FieldInsnNode) insn).desc);
+
+            case PUTSTATIC:
+                return -sizeOfDesc(((FieldInsnNode) insn).desc);
+
+            case GETFIELD:
+                return sizeOfDesc(((FieldInsnNode) insn).desc) - 1;
+
+            case PUTFIELD:
+                return -sizeOfDesc(((FieldInsnNode) insn).desc) - 1;
+
+            case INVOKEVIRTUAL: case INVOKESPECIAL: case INVOKEINTERFACE:
+                return invokeDelta(((MethodInsnNode) insn).desc, true);
+
+            case INVOKESTATIC:
+                return invokeDelta(((MethodInsnNode) insn).desc, false);
+
+            case INVOKEDYNAMIC:
+                return invokeDelta(((InvokeDynamicInsnNode) insn).desc, false);
+
+            case MULTIANEWARRAY:
+                return 1 - ((MultiANewArrayInsnNode) insn).dims;
+
+            default:
+                throw new IllegalArgumentException("Unexpected opcode: " + opcode);
+        }
+    }
+}
@@ -19,6 +19,16 @@ package com.epam.deltix.vtype.transformer;
 import com.epam.deltix.vtype.common.CachedStringConverter;
 
 public class MethodNameTransformer extends CachedStringConverter {
+    // Name suffixes only depend on the descriptor, so all class transformations share one instance
+    private static final MethodNameTransformer shared = new MethodNameTransformer();
+
+    public MethodNameTransformer() {
+        super("Method name suffix", 0x1000);
+    }
+
+    public static MethodNameTransformer shared() {
+        return shared;
+    }
 
     private boolean isIgnored(String name) {
         // We can't change constructor names due to weird errors in the test with inner classes
@@ -26,6 +26,10 @@ import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Label;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.LongAdder;
+
 import static com.epam.deltix.vtype.transformer.AsmUtil.shouldBeRenamed;
 import static org.objectweb.asm.Opcodes.*;
 
@@ -39,6 +43,10 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
 
     public static final String suppressWarningsAnnotation = "ValueTypeSuppressWarnings";
 
+    // Number of transformed methods, and how many of them took the straight-line fast path
+    private static final LongAdder numTransformedMethods = new LongAdder();
+    private static final LongAdder numStraightLineMethods = new LongAdder();
+
     private final CrudeLogger log;
     private final Mapping mapping;
 
@@ -61,6 +69,12 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
 
     final Warnings warnings;
     private int currentLine;
+    // If true, warnings are kept in pendingWarnings until reportWarnings() is called
+    boolean deferWarnings;
+    private String pendingWarnings;
+    // Set if the method contains jumps, switches, exception handlers or stack frames
+    private boolean hasBranches;
+    private boolean hasFrames;
 
 
     MethodNode(final TranslationState state, int access, String name, String desc, String signature, String[] exceptions,
@@ -77,7 +91,7 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
         this.warnings       = state.warnings;
 
         boolean isClInit = name.equals("<clinit>");
-        if ((isClInit || name.equals("<init>")) && null != (state.firstVtField[isClInit ? 1 : 0])) {
+        if ((isClInit || name.equals("<init>")) && state.hasScalarVtFields(isClInit ? 1 : 0)) {
             this.vtFieldInitializationRequired = true;
         } else {
             this.vtFieldInitializationRequired = false;
@@ -87,7 +101,7 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
         this.originalDesc = desc;
 
         if (DescriptorParser.findVtInMethodDesc(desc, mapping)) {
-            this.name = name = state.methodNameConverter.transformIf(0 != (ACC_STATIC & access) || shouldBeRenamed(name, desc, mapping), name, desc);
+            this.name = name = transformedName(state, access, name, desc);
             this.desc = desc = DescriptorParser.getTransformedDesc(desc, false, mapping);
         }
 
@@ -119,6 +133,30 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
     }
 
 
+    /**
+     * @return method name after the transformation, assuming its descriptor contains Value Types
+     */
+    static String transformedName(TranslationState state, int access, String name, String desc) {
+        return state.methodNameConverter.transformIf(0 != (ACC_STATIC & access) || shouldBeRenamed(name, desc, state.mapping), name, desc);
+    }
+
+
+    /**
+     * @return true if the code has no branches, so it is transformed without stack frame reconciliation
+     */
+    boolean isStraightLine() {
+        return !hasBranches;
+    }
+
+    static long getNumTransformedMethods() {
+        return numTransformedMethods.sum();
+    }
+
+    static long getNumStraightLineMethods() {
+        return numStraightLineMethods.sum();
+    }
+
+
     protected void dbgBreak() {
 
         log.debuggerBreak();
@@ -186,8 +224,14 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
     @Override
     public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack) {
 
+        hasBranches = true;
         FrameMap frameMap = state.frameMap;
         if (null != frameMap) {
+            if (!hasFrames) {
+                hasFrames = true;
+                state.onFirstFrame(this);
+            }
+
             frameMap.processFrame(type, nLocal, local, nStack, stack);
             frameMap.addFrameNode(instructions.getLast());
         }
@@ -196,6 +240,34 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
     }
 
 
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+
+        hasBranches = true;
+        super.visitJumpInsn(opcode, label);
+    }
+
+    @Override
+    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+
+        hasBranches = true;
+        super.visitTableSwitchInsn(min, max, dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+
+        hasBranches = true;
+        super.visitLookupSwitchInsn(dflt, keys, labels);
+    }
+
+    @Override
+    public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+
+        hasBranches = true;
+        super.visitTryCatchBlock(start, end, handler, type);
+    }
+
     @Override
     public void visitLabel(Label label) {
 
@@ -221,18 +293,22 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
             InstructionIterator iter = state.instructionIterator;
 
             // Pass 1: Scan and skip methods that don't contain relevant code
-            // TODO: It is outdated as we are are expecting a list of relevant methods from the new QuickScanClassVisitor class
-            boolean hasVType = false;
+            // Not needed if QuickScan already found the methods that use Value Types
+            boolean hasVType;
             if (!desc.equals(originalDesc)) {
                 hasVType = true;
+            } else if (null != state.vtMethods) {
+                hasVType = state.vtMethods.contains(originalName + originalDesc);
             } else {
-                hasVType = false;
-                iter.processMethod(this, state.vTypeScanOpcodeProcessor);
+                VTypeScanHandler vTypeScan = state.vTypeScanOpcodeProcessor;
+                vTypeScan.reset();
+                iter.processMethod(this, vTypeScan);
+                hasVType = vTypeScan.hasVType();
             }
 
             //System.out.printf("checking method: %s.%s / %s%n", classPath, name, desc);
 
-            if (!(hasVType || state.vTypeScanOpcodeProcessor.hasVType())) {
+            if (!hasVType) {
                 log.dbg("No Value Types found in method: %s.%s", className, name);
 
                 if (mapping.verifyAllMethods) {
@@ -266,6 +342,11 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
             state.debugVarsListTransformer.startTransformation();
             iter.processMethod(this, state.singlePassCodeTransformer);
             this.localVariables = state.debugVarsListTransformer.getResult();
+            if (isStraightLine()) {
+                state.maxsCalculator.computeStraightLine(this);
+            } else {
+                state.maxsCalculator.compute(this);
+            }
 
             if (mapping.logSuccesses || shouldLogMethodName) {
                 log.print("VT Agent: UPDATED method: %s.%s / %s%n",
@@ -274,14 +355,22 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
             }
 
             if (0 != warnings.numTotal()) {
-                System.err.printf("VT Agent warnings for method: %s.%s:%n",
-                        className.replace('/', '.'), originalName);
-
                 warnings.setSuppressWarningsAnnotation(suppressWarningsAnnotation);
-                warnings.print(System.err);
+                ByteArrayOutputStream text = new ByteArrayOutputStream();
+                PrintStream out = new PrintStream(text);
+                warnings.print(out);
+                out.flush();
+                pendingWarnings = text.toString();
+                if (!deferWarnings) {
+                    reportWarnings(state.warningListener);
+                }
             }
 
             state.classWasTransformed = true;
+            numTransformedMethods.increment();
+            if (isStraightLine()) {
+                numStraightLineMethods.increment();
+            }
         }
         catch (Throwable e) {
             //System.out.printf("Exception occured while processing method: %s.%s%s%n", classPath, name, desc);
@@ -294,6 +383,21 @@ public class MethodNode extends org.objectweb.asm.tree.MethodNode {
         }
     }
 
+    void reportWarnings(WarningListener warningListener) {
+
+        String text = pendingWarnings;
+        if (null == text)
+            return;
+
+        pendingWarnings = null;
+        if (null != warningListener) {
+            warningListener.onWarnings(className.replace('/', '.') + '.' + originalName, text);
+        } else {
+            System.err.printf("VT Agent warnings for method: %s.%s:%n", className.replace('/', '.'), originalName);
+            System.err.print(text);
+        }
+    }
+
     public void setShouldLogMethodName(boolean shouldLogMethodName) {
         this.shouldLogMethodName = shouldLogMethodName;
     }
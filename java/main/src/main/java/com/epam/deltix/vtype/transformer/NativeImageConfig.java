@@ -0,0 +1,161 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.ClassDef;
+import com.epam.deltix.vtype.mapping.Mapping;
+import com.epam.deltix.vtype.mapping.MethodDef;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.objectweb.asm.Opcodes.ASM9;
+
+/**
+ * Writes GraalVM native-image reflection config for the methods of Value Type and implementation classes, that
+ * the transformed code calls: boxing, unboxing, array boxing/unboxing, isNull and isIdentical.
+ * <p>
+ * Transformed code calls them directly, so native-image reaches them by static analysis. The config additionally
+ * registers them for reflection, that ClassDef.loadNullValue() relies on when a mapping is loaded inside the image.
+ * None of them is native, so no JNI config is needed.
+ */
+final class NativeImageConfig {
+    static final String REFLECT_CONFIG = "reflect-config.json";
+
+    private NativeImageConfig() {
+    }
+
+    /**
+     * @param loader used to read class files, methods not declared by their classes are not written
+     * @return number of classes written to reflect-config.json in the given directory
+     */
+    static int write(Mapping mapping, ClassLoader loader, File dir) throws IOException {
+
+        // Class path -> method name + desc, in the mapping order
+        Map<String, Set<String>> classes = new LinkedHashMap<>();
+        for (int i = 0, n = mapping.numClasses(); i < n; ++i) {
+            ClassDef classDef = mapping.getClassDef(i);
+            add(classes, classDef.unboxingMethod);
+            add(classes, classDef.boxingMethod);
+            add(classes, classDef.arrayUnboxingMethod);
+            add(classes, classDef.arrayBoxingMethod);
+            add(classes, classDef.isNullMethod);
+
+            // Same as generated by CodeTransformerBase for comparisons
+            add(classes, classDef.getDstClassPath(), "isIdentical", "(JJ)Z");
+            add(classes, classDef.getDstClassPath(), "isIdentical", "(JLjava/lang/Object;)Z");
+            add(classes, classDef.getSrcClassPath(), "isIdentical", "(" + classDef.getSrcClassDesc() + "Ljava/lang/Object;)Z");
+        }
+
+        // Not every Value Type declares isIdentical(), keep only the methods that exist
+        for (Iterator<Map.Entry<String, Set<String>>> i = classes.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Set<String>> e = i.next();
+            Set<String> declared = declaredMethods(loader, e.getKey());
+            if (null != declared) {
+                e.getValue().retainAll(declared);
+                if (e.getValue().isEmpty()) {
+                    i.remove();
+                }
+            }
+        }
+
+        StringBuilder json = new StringBuilder("[\n");
+        String classSeparator = "";
+        for (Map.Entry<String, Set<String>> e : classes.entrySet()) {
+            json.append(classSeparator).append("  {\n    \"name\" : \"").append(e.getKey().replace('/', '.'))
+                    .append("\",\n    \"methods\" : [\n");
+
+            String methodSeparator = "";
+            for (String method : e.getValue()) {
+                int i = method.indexOf('(');
+                json.append(methodSeparator).append("      { \"name\" : \"").append(method, 0, i).append("\", \"parameterTypes\" : [");
+                String argSeparator = "";
+                for (Type arg : Type.getArgumentTypes(method.substring(i))) {
+                    json.append(argSeparator).append('"').append(arg.getClassName()).append('"');
+                    argSeparator = ", ";
+                }
+
+                json.append("] }");
+                methodSeparator = ",\n";
+            }
+
+            json.append("\n    ]\n  }");
+            classSeparator = ",\n";
+        }
+
+        json.append("\n]\n");
+        Files.createDirectories(dir.toPath());
+        Files.write(new File(dir, REFLECT_CONFIG).toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+        return classes.size();
+    }
+
+    /**
+     * @return name + desc of the methods declared by the class, or null if its class file is not found
+     */
+    private static Set<String> declaredMethods(ClassLoader loader, String classPath) throws IOException {
+
+        try (InputStream in = loader.getResourceAsStream(classPath + ".class")) {
+            if (null == in)
+                return null;
+
+            final Set<String> methods = new HashSet<>();
+            new ClassReader(OfflineTransformer.readFully(in)).accept(new ClassVisitor(ASM9) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                    methods.add(name + desc);
+                    return null;
+                }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+            return methods;
+        }
+    }
+
+    private static void add(Map<String, Set<String>> classes, MethodDef method) {
+
+        if (null != method) {
+            add(classes, method.getNewOwner(), method.getNewName(), method.getNewDesc());
+        }
+    }
+
+    private static void add(Map<String, Set<String>> classes, String classPath, String name, String desc) {
+
+        if (null == classPath || null == name || null == desc)
+            return;
+
+        Set<String> methods = classes.get(classPath);
+        if (null == methods) {
+            methods = new LinkedHashSet<>();
+            classes.put(classPath, methods);
+        }
+
+        methods.add(name + desc);
+    }
+}
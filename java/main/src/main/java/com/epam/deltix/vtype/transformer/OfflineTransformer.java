@@ -0,0 +1,582 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.ClassDef;
+import com.epam.deltix.vtype.mapping.Mapping;
+import com.epam.deltix.vtype.mapping.MappingReader;
+import com.epam.deltix.vtype.mapping.MappingSnapshot;
+import org.objectweb.asm.ClassReader;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Ahead-of-time transformer. Applies the same transformation as the agent to jars and class directories,
+ * so the result can be executed without -javaagent.
+ * <p>
+ * Usage: OfflineTransformer -config valuetypes.json -output outDir [-classpath path] [-threads n] [-snapshot file] [-index file] [-nativeImage dir] input1.jar input2dir ...
+ * <p>
+ * Each input jar is written to the output directory under the same name, each input directory is written
+ * to the output subdirectory with the same name. Value Type classes are searched in the inputs and the specified classpath.
+ * <p>
+ * -snapshot writes the resolved mapping, that can be loaded by the agent instead of scanning Value Type classes
+ * (see "mappingSnapshot" config setting). Inputs and output are optional if only the snapshot is needed.
+ * <p>
+ * -index writes the list of input classes left unchanged by the transformation, that the agent will not scan
+ * (see "usageIndex" config setting). Output is optional if only the index is needed.
+ * <p>
+ * -nativeImage writes reflect-config.json for GraalVM native-image to the given directory, to build a native image
+ * from the transformed classes. Inputs and output are optional if only the config is needed.
+ * <p>
+ * Transformed classes are marked with "ValueTypeTransformed" attribute. The agent, and later runs of this transformer,
+ * leave the marked classes unchanged, so the output can be used with the agent attached and can be put into CDS archive.
+ */
+public final class OfflineTransformer implements Closeable {
+    private static final String CLASS_EXT = ".class";
+    // Number of classes transformed by a single fork-join task without splitting
+    private static final int MIN_TASK_SIZE = 16;
+
+    private final Mapping mapping;
+    private final ConstantPoolScanner constantPoolScanner;
+    private final URLClassLoader classLoader;
+    private final ForkJoinPool pool;
+
+    private final AtomicInteger numTransformed = new AtomicInteger();
+    private final AtomicInteger numSkipped = new AtomicInteger();
+    private final AtomicInteger numFailed = new AtomicInteger();
+    private final AtomicInteger numCopied = new AtomicInteger();
+    private final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+    private volatile WarningListener warningListener;
+    private volatile UsageIndex.Builder usageIndex;
+
+    /**
+     * @param configPath path to JSON config, same as given to the agent
+     * @param classpath jars and directories, containing Value Type classes and their dependencies
+     * @param parallelism number of threads used for transformation, 0 - use all available processors
+     */
+    public OfflineTransformer(String configPath, List<File> classpath, int parallelism) throws Exception {
+
+        mapping = MappingReader.parse(configPath);
+        constantPoolScanner = ConstantPoolScanner.forMapping(mapping);
+        URL[] urls = new URL[classpath.size()];
+        for (int i = 0; i < urls.length; ++i) {
+            urls[i] = classpath.get(i).toURI().toURL();
+        }
+
+        // Only JDK classes are taken from the parent, Value Types are always loaded from the given classpath
+        classLoader = new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        loadValueTypeClasses();
+    }
+
+    private void loadValueTypeClasses() throws Exception {
+
+        mapping.loadClasses(new Mapping.ClassDefLoader() {
+            @Override
+            public void load(ClassDef classDef, String classPath) throws Exception {
+                byte[] data = readResource(classPath + CLASS_EXT);
+                if (null == data)
+                    throw new ClassNotFoundException("Value Type class not found in the classpath: " + classPath);
+
+                ClassFileTransformer.transformClass(new ClassReader(data), classPath, classDef, mapping);
+            }
+        }, classLoader);
+    }
+
+    private byte[] readResource(String path) throws IOException {
+
+        try (InputStream in = classLoader.getResourceAsStream(path)) {
+            return null != in ? readFully(in) : null;
+        }
+    }
+
+    /**
+     * Write the mapping snapshot for the agent, valid while the config and Value Type classes stay the same
+     */
+    public void writeMappingSnapshot(File file) throws IOException {
+        MappingSnapshot.write(mapping, MappingFingerprint.compute(mapping, classLoader), file);
+    }
+
+    /**
+     * Write GraalVM native-image reflection config for the Value Type methods called by the transformed code
+     * @return number of classes in the config
+     */
+    public int writeNativeImageConfig(File dir) throws IOException {
+        return NativeImageConfig.write(mapping, classLoader, dir);
+    }
+
+    /**
+     * @param warningListener receives transformation warnings, if null, warnings are printed to stderr
+     */
+    public void setWarningListener(WarningListener warningListener) {
+        this.warningListener = warningListener;
+    }
+
+    /**
+     * @return true if the class is one of the src/dst Value Type classes, changing them invalidates all transformation results
+     */
+    public boolean isValueTypeClass(String classPath) {
+        return mapping.isMappedClass(classPath);
+    }
+
+    Mapping getMapping() {
+        return mapping;
+    }
+
+    public int getNumTransformed() {
+        return numTransformed.get();
+    }
+
+    public int getNumSkipped() {
+        return numSkipped.get();
+    }
+
+    public int getNumFailed() {
+        return numFailed.get();
+    }
+
+    public List<String> getFailures() {
+        return new ArrayList<>(failures);
+    }
+
+    public String getSummary() {
+        return String.format("%d classes transformed, %d skipped, %d failed, %d other files copied",
+                getNumTransformed(), getNumSkipped(), getNumFailed(), numCopied.get());
+    }
+
+    /**
+     * Transform a single class
+     * @return transformed class or null if the class should be left unchanged or its transformation failed
+     */
+    public byte[] transform(byte[] classBytes) {
+
+        String className = null;
+        try {
+            if (null != constantPoolScanner && !constantPoolScanner.mayReferenceValueTypes(classBytes)) {
+                onUnchanged(className, classBytes);
+                return null;
+            }
+
+            // Output of a previous run
+            if (TransformedClassMarker.isMarked(classBytes)) {
+                onUnchanged(className, classBytes);
+                return null;
+            }
+
+            ClassReader cr = new ClassReader(classBytes);
+            className = cr.getClassName();
+            if (ClassFileTransformer.isExcludedClass(className, mapping) || mapping.isMappedClass(className)) {
+                onUnchanged(className, classBytes);
+                return null;
+            }
+
+            QuickScanClassVisitor scanResult = ClassFileTransformer.quickScan(cr, null, mapping);
+            if (!ClassFileTransformer.mayUseValueTypes(scanResult, mapping)) {
+                onUnchanged(className, classBytes);
+                return null;
+            }
+
+            byte[] data = ClassFileTransformer.transformClass(cr, className, null, mapping, warningListener, scanResult, true);
+            if (null != data) {
+                numTransformed.incrementAndGet();
+            } else {
+                onUnchanged(className, classBytes);
+            }
+
+            return data;
+        } catch (Throwable e) {
+            String message = className + ": " + e;
+            if (e instanceof MethodException) {
+                MethodException mex = (MethodException) e;
+                message = String.format("%s line %d: %s", mex.getMethodFullName(), mex.getLine(), e.getCause());
+            }
+
+            numFailed.incrementAndGet();
+            failures.add(message);
+            System.err.println("VT Transformer: FAILED to transform class: " + message);
+            return null;
+        }
+    }
+
+    private void onUnchanged(String className, byte[] classBytes) {
+
+        numSkipped.incrementAndGet();
+        UsageIndex.Builder index = usageIndex;
+        if (null != index) {
+            index.addUnchanged(null != className ? className : new ClassReader(classBytes).getClassName(), classBytes);
+        }
+    }
+
+    /**
+     * Start collecting classes left unchanged by the transformation, see writeUsageIndex()
+     */
+    public void startUsageIndex() {
+        usageIndex = new UsageIndex.Builder();
+    }
+
+    /**
+     * Write the index of unchanged classes seen since startUsageIndex(). The agent, given this index, skips them
+     * without scanning, while the config and Value Type classes stay the same
+     * @return number of classes in the index
+     */
+    public int writeUsageIndex(File file) throws IOException {
+
+        UsageIndex.Builder index = usageIndex;
+        if (null == index)
+            throw new IllegalStateException("startUsageIndex() was not called");
+
+        index.write(file, MappingFingerprint.compute(mapping, classLoader));
+        return index.size();
+    }
+
+    /**
+     * @param output output jar, if null, the result is not written (only used to build usage index)
+     */
+    public void transformJar(File input, File output) throws IOException {
+
+        final List<Entry> entries = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(input)) {
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                ZipEntry zipEntry = e.nextElement();
+                if (zipEntry.isDirectory() || isSignatureFile(zipEntry.getName()))
+                    continue;
+
+                try (InputStream in = zip.getInputStream(zipEntry)) {
+                    entries.add(new Entry(zipEntry.getName(), readFully(in), zipEntry.getTime()));
+                }
+            }
+        }
+
+        transformEntries(entries);
+        if (null == output)
+            return;
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Unable to create directory: " + parent);
+
+        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            for (Entry entry : entries) {
+                ZipEntry zipEntry = new ZipEntry(entry.name);
+                zipEntry.setTime(entry.time);
+                out.putNextEntry(zipEntry);
+                out.write(null != entry.result ? entry.result : entry.data);
+                out.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * @param output output directory, if null, the result is not written (only used to build usage index)
+     */
+    public void transformDirectory(File input, File output) throws IOException {
+
+        List<File> inputs = new ArrayList<>();
+        listFiles(input, inputs);
+        List<File> outputs = new ArrayList<>(inputs.size());
+        String inputRoot = input.getAbsolutePath();
+        for (File file : inputs) {
+            outputs.add(null != output ? new File(output, file.getAbsolutePath().substring(inputRoot.length() + 1)) : null);
+        }
+
+        transformFiles(inputs, outputs);
+    }
+
+    /**
+     * Transform class files, writing the results to the corresponding output files. Other files are copied unchanged.
+     * Input and output file can be the same, null output file means that the result is not written.
+     */
+    public void transformFiles(List<File> inputs, List<File> outputs) throws IOException {
+
+        if (inputs.size() != outputs.size())
+            throw new IllegalArgumentException("Number of inputs and outputs must match");
+
+        List<Entry> entries = new ArrayList<>(inputs.size());
+        for (int i = 0, n = inputs.size(); i < n; ++i) {
+            entries.add(new Entry(inputs.get(i), outputs.get(i)));
+        }
+
+        transformEntries(entries);
+    }
+
+    private void transformEntries(List<Entry> entries) throws IOException {
+
+        TransformTask task = new TransformTask(entries, 0, entries.size());
+        pool.invoke(task);
+        if (null != task.ioException)
+            throw task.ioException;
+    }
+
+    private static void listFiles(File dir, List<File> out) {
+
+        File[] files = dir.listFiles();
+        if (null == files)
+            return;
+
+        // Sorted to keep the output deterministic
+        List<File> sorted = new ArrayList<>(files.length);
+        Collections.addAll(sorted, files);
+        Collections.sort(sorted);
+        for (File file : sorted) {
+            if (file.isDirectory()) {
+                listFiles(file, out);
+            } else {
+                out.add(file);
+            }
+        }
+    }
+
+    private static boolean isSignatureFile(String name) {
+
+        if (!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) >= 0)
+            return false;
+
+        // Signatures will not match modified classes
+        return name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC");
+    }
+
+    private static boolean isClassFile(String name) {
+        return name.endsWith(CLASS_EXT) && !name.endsWith("module-info" + CLASS_EXT);
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 0x1000));
+        byte[] buffer = new byte[0x2000];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+
+        return out.toByteArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdown();
+        classLoader.close();
+    }
+
+    private final class Entry {
+        final String name;
+        final long time;
+        final File inputFile;
+        final File outputFile;
+        byte[] data;
+        byte[] result;
+
+        Entry(String name, byte[] data, long time) {
+            this.name = name;
+            this.data = data;
+            this.time = time;
+            this.inputFile = this.outputFile = null;
+        }
+
+        Entry(File inputFile, File outputFile) {
+            this.name = inputFile.getName();
+            this.time = -1;
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+        }
+
+        void process() throws IOException {
+
+            if (null != inputFile) {
+                data = Files.readAllBytes(inputFile.toPath());
+            }
+
+            if (isClassFile(name)) {
+                result = transform(data);
+            } else {
+                numCopied.incrementAndGet();
+            }
+
+            if (null != outputFile && (null != result || !outputFile.equals(inputFile))) {
+                File parent = outputFile.getParentFile();
+                if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+                    throw new IOException("Unable to create directory: " + parent);
+
+                Files.write(outputFile.toPath(), null != result ? result : data);
+            }
+
+            if (null != inputFile) {
+                // Files are processed independently, no need to keep their contents
+                data = result = null;
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class TransformTask extends RecursiveAction {
+        private final List<Entry> entries;
+        private final int from;
+        private final int to;
+        IOException ioException;
+
+        TransformTask(List<Entry> entries, int from, int to) {
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= MIN_TASK_SIZE) {
+                try {
+                    for (int i = from; i < to; ++i) {
+                        entries.get(i).process();
+                    }
+                } catch (IOException e) {
+                    ioException = e;
+                }
+
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            TransformTask left = new TransformTask(entries, from, mid);
+            TransformTask right = new TransformTask(entries, mid, to);
+            invokeAll(left, right);
+            ioException = null != left.ioException ? left.ioException : right.ioException;
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: OfflineTransformer -config <config.json> -output <dir> [-classpath <path>] [-threads <n>] [-snapshot <file>] [-index <file>] [-nativeImage <dir>] <jar or directory> ...");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        String configPath = null;
+        File outputDir = null;
+        File snapshotFile = null;
+        File indexFile = null;
+        File nativeImageDir = null;
+        int parallelism = 0;
+        List<File> inputs = new ArrayList<>();
+        List<File> classpath = new ArrayList<>();
+
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (arg.startsWith("-") && i + 1 == args.length)
+                usage();
+
+            switch (arg) {
+                case "-config":
+                    configPath = args[++i];
+                    break;
+                case "-output":
+                    outputDir = new File(args[++i]);
+                    break;
+                case "-cp":
+                case "-classpath":
+                    for (String path : args[++i].split(File.pathSeparator)) {
+                        if (!path.isEmpty()) {
+                            classpath.add(new File(path));
+                        }
+                    }
+                    break;
+                case "-threads":
+                    parallelism = Integer.parseInt(args[++i]);
+                    break;
+                case "-snapshot":
+                    snapshotFile = new File(args[++i]);
+                    break;
+                case "-index":
+                    indexFile = new File(args[++i]);
+                    break;
+                case "-nativeImage":
+                    nativeImageDir = new File(args[++i]);
+                    break;
+                default:
+                    if (arg.startsWith("-"))
+                        usage();
+
+                    inputs.add(new File(arg));
+            }
+        }
+
+        if (null == configPath || (inputs.isEmpty() ? null == snapshotFile && null == nativeImageDir || null != indexFile : null == outputDir && null == indexFile))
+            usage();
+
+        List<File> fullClasspath = new ArrayList<>(inputs);
+        fullClasspath.addAll(classpath);
+
+        System.out.printf("VT Transformer: Version %s%n", Version.version);
+        long t0 = System.nanoTime();
+        try (OfflineTransformer transformer = new OfflineTransformer(configPath, fullClasspath, parallelism)) {
+            System.out.printf("VT Transformer: %d Value Type classes loaded%n", transformer.getMapping().numLoadedClasses());
+            if (null != snapshotFile) {
+                transformer.writeMappingSnapshot(snapshotFile);
+                System.out.printf("VT Transformer: Mapping snapshot written to %s%n", snapshotFile);
+            }
+
+            if (null != nativeImageDir) {
+                int n = transformer.writeNativeImageConfig(nativeImageDir);
+                System.out.printf("VT Transformer: native-image config for %d classes written to %s%n", n, nativeImageDir);
+            }
+
+            if (null != indexFile) {
+                transformer.startUsageIndex();
+            }
+
+            for (File input : inputs) {
+                File output = null != outputDir ? new File(outputDir, input.getName()) : null;
+                if (null != output && output.getAbsoluteFile().equals(input.getAbsoluteFile()))
+                    throw new IllegalArgumentException("Output directory must differ from the input location: " + input);
+
+                if (input.isDirectory()) {
+                    transformer.transformDirectory(input, output);
+                } else {
+                    transformer.transformJar(input, output);
+                }
+
+                System.out.printf("VT Transformer: %s -> %s%n", input, null != output ? output : "(not written)");
+            }
+
+            if (null != indexFile) {
+                int n = transformer.writeUsageIndex(indexFile);
+                System.out.printf("VT Transformer: Usage index with %d unchanged classes written to %s%n", n, indexFile);
+            }
+
+            System.out.printf("VT Transformer: %s in %d ms%n", transformer.getSummary(), (System.nanoTime() - t0) / 1000000);
+            for (String failure : transformer.getFailures()) {
+                System.err.println("VT Transformer: FAILED: " + failure);
+            }
+
+            if (0 != transformer.getNumFailed()) {
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import org.objectweb.asm.MethodVisitor;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.objectweb.asm.Opcodes.ASM9;
+
+/**
+ * Transforms methods of large classes in parallel on a shared fork-join pool.
+ * <p>
+ * Methods are recorded as is while the class is read. Each of them is then replayed into a MethodNode on a pool
+ * thread, using a TranslationState of that thread, with the per-class state copied from the class thread.
+ * Method writers are reserved in the original order, and are filled in the same order after all methods are read,
+ * so the class file doesn't depend on thread scheduling.
+ */
+final class ParallelMethodTransformer {
+    private static final ThreadLocal<TranslationState> workerState = new ThreadLocal<>();
+    private static ForkJoinPool pool;
+
+    private ParallelMethodTransformer() {
+    }
+
+    private static synchronized ForkJoinPool pool() {
+
+        if (null == pool) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+
+        return pool;
+    }
+
+    /**
+     * @return TranslationState of the current pool thread, prepared for the methods of the class processed by classState
+     */
+    private static TranslationState acquireState(TranslationState classState) {
+
+        TranslationState state = workerState.get();
+        if (null == state || state.mapping != classState.mapping) {
+            state = new TranslationState(classState.classPath, classState.classDef, classState.mapping);
+            workerState.set(state);
+        } else if (state.inUse) {
+            state = new TranslationState(classState.classPath, classState.classDef, classState.mapping);
+        }
+
+        state.copyClassState(classState);
+        state.inUse = true;
+        return state;
+    }
+
+    /**
+     * Records a method, starts its transformation when the method end is reached
+     */
+    static final class DeferredMethod extends org.objectweb.asm.tree.MethodNode implements Runnable {
+        private final TranslationState classState;
+        private final String[] exceptionsArray;
+        // Method writer, reserved when the method was read
+        private final MethodVisitor target;
+        private ForkJoinTask<?> task;
+
+        // Set by the pool thread
+        private MethodNode result;
+        private boolean wasTransformed;
+        private Throwable failure;
+
+        DeferredMethod(TranslationState classState, int access, String name, String desc, String signature,
+                       String[] exceptions, MethodVisitor target) {
+
+            super(ASM9, access, name, desc, signature, exceptions);
+            this.classState = classState;
+            this.exceptionsArray = exceptions;
+            this.target = target;
+        }
+
+        @Override
+        public void visitEnd() {
+            task = pool().submit(this);
+        }
+
+        @Override
+        public void run() {
+
+            TranslationState state = acquireState(classState);
+            try {
+                MethodNode node = new MethodNode(state, access, name, desc, signature, exceptionsArray, null);
+                node.deferWarnings = true;
+                accept(node);
+                // The transformed local variable list is owned by the state and reused for the next method
+                if (null != node.localVariables) {
+                    node.localVariables = new ArrayList<>(node.localVariables);
+                }
+
+                wasTransformed = state.classWasTransformed;
+                result = node;
+            } catch (Throwable e) {
+                // State may be left inconsistent, don't reuse it
+                workerState.remove();
+                failure = e;
+            } finally {
+                state.inUse = false;
+            }
+        }
+
+        /**
+         * Wait for the transformation to complete and write the transformed method, must be called on the class thread
+         */
+        void writeTo() {
+
+            task.join();
+            if (null != failure) {
+                if (failure instanceof RuntimeException)
+                    throw (RuntimeException) failure;
+
+                if (failure instanceof Error)
+                    throw (Error) failure;
+
+                throw new RuntimeException(failure);
+            }
+
+            result.reportWarnings(classState.warningListener);
+            if (wasTransformed) {
+                classState.classWasTransformed = true;
+            }
+
+            result.accept(target);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transforms classes ahead of time on background threads, so that class loading on the startup path
+ * finds the result ready instead of transforming the class inline.
+ * <p>
+ * Candidates are read from the class list recorded by a previous run: class paths of all transformed classes
+ * in the order they were loaded, one per line. If the list doesn't exist, it is recorded during this run and
+ * written on exit. Classes are transformed in the list order, so the classes needed earliest are ready first.
+ * A result is only used if the class file passed by the JVM is the same as the one that was transformed.
+ */
+final class PreTransformer {
+    // Stored for a class that is left unchanged
+    private static final byte[] NOT_TRANSFORMED = new byte[0];
+
+    private final ClassFileTransformer transformer;
+    private final File listFile;
+    private final int numThreads;
+
+    private List<String> candidates;
+    private Set<String> candidateSet;
+    private final AtomicInteger nextCandidate = new AtomicInteger();
+    // Class path -> {original class file, transformed class file}
+    private final ConcurrentHashMap<String, byte[][]> results = new ConcurrentHashMap<>();
+    // Classes already seen by transform(), no need to transform them ahead of time
+    private final Set<String> loadedClasses = ConcurrentHashMap.newKeySet();
+    // Recorded class list, null if not recording
+    private ConcurrentLinkedQueue<String> recordedClasses;
+
+    private final AtomicInteger numHits = new AtomicInteger();
+    private final AtomicInteger numNotReady = new AtomicInteger();
+
+    PreTransformer(ClassFileTransformer transformer, String listPath, int numThreads) {
+
+        this.transformer = transformer;
+        this.listFile = new File(listPath).getAbsoluteFile();
+        this.numThreads = Math.max(numThreads, 1);
+    }
+
+    /**
+     * Start background transformation, or recording of the class list if there is no list yet
+     * @param loader used to read class files of the candidates
+     */
+    void start(final ClassLoader loader) {
+
+        if (!listFile.isFile()) {
+            System.out.printf("VT Agent: Recording class list for pre-transformation: %s%n", listFile);
+            recordedClasses = new ConcurrentLinkedQueue<>();
+            Runtime.getRuntime().addShutdownHook(new Thread("VT Agent class list writer") {
+                @Override
+                public void run() {
+                    writeClassList();
+                }
+            });
+
+            return;
+        }
+
+        try {
+            List<String> lines = Files.readAllLines(listFile.toPath(), StandardCharsets.UTF_8);
+            candidateSet = new HashSet<>(lines);
+            candidates = lines;
+        } catch (IOException e) {
+            System.err.printf("VT Agent: WARNING: Pre-transformation disabled, unable to read class list: %s%n", e);
+            return;
+        }
+
+        System.out.printf("VT Agent: Pre-transforming %d classes on %d threads%n", candidates.size(), numThreads);
+        for (int i = 0; i < numThreads; ++i) {
+            Thread thread = new Thread("VT Agent pre-transformer " + i) {
+                @Override
+                public void run() {
+                    transformCandidates(loader);
+                }
+            };
+
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread("VT Agent pre-transformer statistics") {
+            @Override
+            public void run() {
+                System.out.printf("VT Agent: Pre-transformed classes used: %d, not ready: %d, unused: %d%n",
+                        numHits.get(), numNotReady.get(), results.size());
+            }
+        });
+    }
+
+    private void transformCandidates(ClassLoader loader) {
+
+        for (int i; (i = nextCandidate.getAndIncrement()) < candidates.size();) {
+            String classPath = candidates.get(i);
+            if (classPath.isEmpty() || loadedClasses.contains(classPath))
+                continue;
+
+            try {
+                byte[] data;
+                try (InputStream in = loader.getResourceAsStream(classPath + ".class")) {
+                    if (null == in)
+                        continue;
+
+                    data = OfflineTransformer.readFully(in);
+                }
+
+                byte[] result = transformer.transformAhead(classPath, data, loader);
+                if (!loadedClasses.contains(classPath)) {
+                    results.put(classPath, new byte[][] { data, null != result ? result : NOT_TRANSFORMED });
+                }
+            } catch (Throwable e) {
+                // Will be transformed again and reported when actually loaded
+            }
+        }
+    }
+
+    /**
+     * Called by transform() for every class it is going to process
+     * @return transformed class, NOT_TRANSFORMED if the class is left unchanged, null if not transformed ahead of time
+     */
+    byte[] take(String classPath, byte[] classBytes) {
+
+        if (null == candidates || !candidateSet.contains(classPath))
+            return null;
+
+        loadedClasses.add(classPath);
+        byte[][] result = results.remove(classPath);
+        if (null == result) {
+            numNotReady.incrementAndGet();
+            return null;
+        }
+
+        // May differ if loaded by another class loader
+        if (!Arrays.equals(result[0], classBytes))
+            return null;
+
+        numHits.incrementAndGet();
+        return result[1];
+    }
+
+    static boolean isTransformed(byte[] result) {
+        return NOT_TRANSFORMED != result;
+    }
+
+    /**
+     * Called by transform() for every transformed class
+     */
+    void onTransformed(String classPath) {
+
+        ConcurrentLinkedQueue<String> recorded = recordedClasses;
+        if (null != recorded) {
+            recorded.add(classPath);
+        }
+    }
+
+    private void writeClassList() {
+
+        List<String> lines = new ArrayList<>(new LinkedHashSet<>(recordedClasses));
+        try {
+            Files.write(listFile.toPath(), lines, StandardCharsets.UTF_8);
+            System.out.printf("VT Agent: Recorded %d classes for pre-transformation: %s%n", lines.size(), listFile);
+        } catch (IOException e) {
+            System.err.printf("VT Agent: WARNING: Unable to write class list: %s%n", e);
+        }
+    }
+}
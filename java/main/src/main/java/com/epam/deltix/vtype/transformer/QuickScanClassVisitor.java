@@ -22,7 +22,10 @@ import com.epam.deltix.vtype.type.DescriptorParser;
 import com.epam.deltix.vtype.type.TypeId;
 import org.objectweb.asm.*;
 
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 import static com.epam.deltix.vtype.transformer.AsmUtil.parseMethod;
 import static org.objectweb.asm.Opcodes.ASM9;
@@ -31,6 +34,9 @@ public class QuickScanClassVisitor extends org.objectweb.asm.ClassVisitor {
     private final Mapping mapping;
     private boolean found;
     private HashSet<String> transformedMethods;
+    // Indices of the Value Type classes found
+    private final BitSet vtClasses = new BitSet();
+    private int[] methodArgs;
     private MethodVisitor cachedMethodVisitor;
 
 
@@ -68,22 +74,60 @@ public class QuickScanClassVisitor extends org.objectweb.asm.ClassVisitor {
         return DescriptorParser.getClassTypeId(desc, mapping);
     }
 
-    int checkTypeId(int typeId) {
+    // Same lookup as DescriptorParser.isVt(), for a class path or type descriptor
+    private int findTypeId(final String desc) {
+
+        int i = 0, end;
+        while ('[' == desc.charAt(i)) {
+            ++i;
+        }
+
+        return 'L' == desc.charAt(i) && (end = desc.indexOf(';', i + 1)) > 0
+                ? mapping.getClassTypeId(desc, i + 1, end) : mapping.getClassTypeId(desc);
+    }
+
+    private boolean addVt(int typeId) {
 
         if (!TypeId.isVt(typeId))
-            throw new IllegalStateException("Not a Value Type Id");
+            return false;
 
-        ClassDef classDef = mapping.getClassDefById(typeId);
-        if (null == classDef || !classDef.isInitialized())
-            throw new IllegalStateException("Class Definition object is not initialized (unable to load transformed classes?)");
+        if (!TypeId.isVtWildcard(typeId)) {
+            vtClasses.set(TypeId.getVtClassIndex(typeId));
+        }
 
-        return typeId;
+        return true;
+    }
+
+    // Only called if the descriptor is known to contain Value Types
+    private void addVtInMethodDesc(final String desc) {
+
+        if (null == methodArgs) {
+            methodArgs = new int[0x100];
+        }
+
+        for (int i = DescriptorParser.parseMethod(methodArgs, 0, desc, mapping); i >= 0; --i) {
+            addVt(methodArgs[i]);
+        }
+    }
+
+    /**
+     * Replaces the checks done by the scan pass, which is skipped when QuickScan results are used
+     * @throws IllegalStateException if a Value Type class used by the scanned class is not initialized
+     */
+    void checkValueTypes() {
+
+        for (int i = vtClasses.nextSetBit(0); i >= 0; i = vtClasses.nextSetBit(i + 1)) {
+            ClassDef classDef = mapping.getClassDef(i);
+            if (!classDef.isInitialized())
+                throw new IllegalStateException("Class Definition object is not initialized (unable to load transformed classes?): "
+                        + classDef.getSrcClassPath());
+        }
     }
 
     @Override
     public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
         int typeId = getDescTypeId(desc);
-        if (TypeId.isVt(typeId)) {
+        if (addVt(typeId)) {
             found = true;
         }
 
@@ -93,13 +137,14 @@ public class QuickScanClassVisitor extends org.objectweb.asm.ClassVisitor {
     @Override
     public MethodVisitor visitMethod(int access, final String name, final String desc, String signature, String[] exceptions) {
 
-        // Already found in the class? TODO: still scan method if we start using this class as the main detector
-        if (found)
-            return null;
-
+        // All methods are scanned, even if Value Types were already found in the class, the list of methods that use
+        // them in code is passed to the main pass
         if (DescriptorParser.findVtInMethodDesc(desc, mapping)) {
             found = true;
-            // No further processing if the type is found in the signature
+            addVtInMethodDesc(desc);
+            // No further processing if the type is found in the signature, such methods are always transformed.
+            // Still listed, they count towards the parallel transformation threshold
+            addMethod(name, desc);
             return null;
         }
 
@@ -111,8 +156,11 @@ public class QuickScanClassVisitor extends org.objectweb.asm.ClassVisitor {
         return cachedMethodVisitor.init(name, desc);
     }
 
-    public HashSet<String> getTransformedMethods() {
-        return transformedMethods;
+    /**
+     * @return name + desc of every method that uses Value Types in the signature or in code
+     */
+    public Set<String> getTransformedMethods() {
+        return null != transformedMethods ? transformedMethods : Collections.<String>emptySet();
     }
 
 
@@ -171,7 +219,7 @@ public class QuickScanClassVisitor extends org.objectweb.asm.ClassVisitor {
          * @return
          */
         private boolean tryFindVt(int typeId) {
-            return TypeId.isVt(typeId) && found();
+            return parent.addVt(typeId) && found();
         }
 
         /**
@@ -180,11 +228,16 @@ public class QuickScanClassVisitor extends org.objectweb.asm.ClassVisitor {
          * @return
          */
         private boolean tryFindVt(String desc) {
-            return DescriptorParser.isVt(desc, mapping) && found();
+            return tryFindVt(parent.findTypeId(desc));
         }
 
         private boolean tryFindVtInMethodDesc(String desc) {
-            return DescriptorParser.findVtInMethodDesc(desc, mapping) && found();
+
+            if (!DescriptorParser.findVtInMethodDesc(desc, mapping))
+                return false;
+
+            parent.addVtInMethodDesc(desc);
+            return found();
         }
 
         @Override
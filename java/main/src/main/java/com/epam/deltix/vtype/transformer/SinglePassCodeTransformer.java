@@ -31,21 +31,37 @@ public class SinglePassCodeTransformer extends CodeTransformerBase {
     private final VariableMap vars;
     private final FrameMap frameMap;
     private TypeArray savedLocalVarFrame;
+    // Scratch arrays for frame transformation, reused to avoid allocation at every branch target
+    private final TypeArray tmpReplacedVars;
+    private final TypeArray tmpTailVars;
+    private final TypeArray tmpSavedVars;
+    private final TypeArray tmpCurrentVars;
+    private final TypeArray tmpFrameRange;
+    private final int[] methodArgTypes;
 
     SinglePassCodeTransformer(TranslationState state) {
 
         super(state);
         savedLocalVarFrame = new TypeArray(16, this);
+        tmpReplacedVars = new TypeArray(16, this);
+        tmpTailVars = new TypeArray(16, this);
+        tmpSavedVars = new TypeArray(16, this);
+        tmpCurrentVars = new TypeArray(16, this);
+        tmpFrameRange = new TypeArray(16, this);
         this.frameMap = state.frameMap;
         this.vars = state.variableMap;
+        this.methodArgTypes = state.methodArgTypes;
     }
 
     protected void init(MethodNode method) {
 
         super.init(method);
-        initializeMethodArguments(vars, method, mapping);
+        initializeMethodArguments(vars, method, mapping, methodArgTypes);
         log.trace("Initial variable frame: %s", vars);
-        saveVarFrame();
+        // Only used to restore the variable frame at stack frames
+        if (!method.isStraightLine()) {
+            saveVarFrame();
+        }
     }
 
     @Override
@@ -428,7 +444,7 @@ public class SinglePassCodeTransformer extends CodeTransformerBase {
 
     @Override
     public void onLabel(LabelNode node) {
-        FrameEntry localFrame = frameMap.getFrames(node);
+        FrameEntry localFrame = method().isStraightLine() ? null : frameMap.getFrames(node);
         // no need to logger, already logged in trace mode
         varTransformer.onLabel(node);
         if (null != localFrame) {
@@ -478,7 +494,10 @@ public class SinglePassCodeTransformer extends CodeTransformerBase {
         // The state of the stack/vars should be already compatible with the contents of this frame node
         // after processing the LabelNode that precedes it. (see onLabel() )
         // So we can get away with just basic Value Type substitution without actually checking the current interpreter state
-        log.dbg("Stack Frame: " + stackFrameToString(node));
+        if (logDbg) {
+            log.dbg("Stack Frame: %s", stackFrameToString(node));
+        }
+
         switch (node.type) {
             case F_SAME:
                 restoreVarFrame();
@@ -639,11 +658,11 @@ public class SinglePassCodeTransformer extends CodeTransformerBase {
 
         assert(firstPreserved <= topSrc);
         TypeArray tailVars = null;
-        TypeArray replacedVars = vars.copyOfRange(varAddr, firstPreserved);
+        TypeArray replacedVars = vars.copyOfRange(tmpReplacedVars, varAddr, firstPreserved);
 
         if (firstPreserved < topSrc) {
             // We are doing copy because "void" vars can't go to stack, but we must still remember their position
-            tailVars = vars.copyOfRange(firstPreserved, topSrc);
+            tailVars = vars.copyOfRange(tmpTailVars, firstPreserved, topSrc);
             for (int i = tailVars.length() - 1; i >= 0; --i) {
                 int removedType = generateLocalVarPop(node, tailVars.getId(i), tailVars.getName(i));
                 assert(tailVars.getId(i) == removedType);
@@ -915,16 +934,16 @@ public class SinglePassCodeTransformer extends CodeTransformerBase {
                 }
             }
 
-            TypeArray saved = vars.copyAll();
+            TypeArray saved = vars.copyOfRange(tmpSavedVars, 0, vars.topSrcAddr());
 
-            transformLocalVarFrame(node, firstFailedSrcAddr, frame.copyOfVarRange(firstFailedFrameIndex, frame.getNumVars()),
+            transformLocalVarFrame(node, firstFailedSrcAddr, frame.copyOfVarRange(tmpFrameRange, firstFailedFrameIndex, frame.getNumVars()),
                     0, frame.getNumVars() - firstFailedFrameIndex);
 
             if (logDbg) {
                 log.trace("Vars transformed to: %s", vars);
             }
 
-            if (saved.length() != vars.numVars() || !saved.equalTypes(vars.copyAll())) {
+            if (saved.length() != vars.numVars() || !saved.equalTypes(vars.copyOfRange(tmpCurrentVars, 0, vars.topSrcAddr()))) {
                 if (logDbg) {
                     log.dbg("Synchronizing debug information: %s", vars);
                 }
@@ -977,7 +996,7 @@ public class SinglePassCodeTransformer extends CodeTransformerBase {
             log.trace("Need to transform stack: [%d..%d](+%d)",
                     lastFailedDepth + stackOffset, stackOffset, stackOffset);
             log.trace("Stack: %s%ncmpResult was: %x", vm, cmpResultTotal);
-            TypeArray to = frame.copyOfStackRange(0, lastFailedDepth + 1);
+            TypeArray to = frame.copyOfStackRange(tmpFrameRange, 0, lastFailedDepth + 1);
             log.trace("Transform to: [%d..0] %s", lastFailedDepth, to);
 
             transformLocalStackFrame(node, stackOffset, to,0, lastFailedDepth + 1);
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ByteVector;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * Empty "ValueTypeTransformed" class attribute, added by the offline transformer to the classes it rewrites.
+ * The agent checks for it to skip the classes that are already transformed, without parsing them.
+ */
+final class TransformedClassMarker extends Attribute {
+    static final String NAME = "ValueTypeTransformed";
+    private static final byte[] NAME_UTF8 = ConstantPoolScanner.toModifiedUtf8(NAME);
+
+    // Attributes are linked into the writer's list, so a new instance is needed for every class
+    TransformedClassMarker() {
+        super(NAME);
+    }
+
+    @Override
+    protected ByteVector write(ClassWriter classWriter, byte[] code, int codeLength, int maxStack, int maxLocals) {
+        return new ByteVector(0);
+    }
+
+    /**
+     * @return true if the class file has the marker attribute. false if it doesn't, or if it can't be parsed
+     */
+    static boolean isMarked(byte[] classFile) {
+
+        byte[] b = classFile;
+        int n = b.length;
+        if (n < 10)
+            return false;
+
+        // Find the constant pool index of the attribute name, most classes don't have it
+        int count = readU2(b, 8);
+        int nameIndex = 0;
+        int i = 10;
+        for (int entry = 1; entry < count; ++entry) {
+            if (i >= n)
+                return false;
+
+            switch (b[i]) {
+                case 1:     // Utf8
+                    if (i + 3 > n)
+                        return false;
+
+                    int end = i + 3 + readU2(b, i + 1);
+                    if (end > n)
+                        return false;
+
+                    if (end - i - 3 == NAME_UTF8.length && 0 == nameIndex && equals(b, i + 3, NAME_UTF8)) {
+                        nameIndex = entry;
+                    }
+
+                    i = end;
+                    break;
+
+                case 7:     // Class
+                case 8:     // String
+                case 16:    // MethodType
+                case 19:    // Module
+                case 20:    // Package
+                    i += 3;
+                    break;
+
+                case 15:    // MethodHandle
+                    i += 4;
+                    break;
+
+                case 3:     // Integer
+                case 4:     // Float
+                case 9:     // Fieldref
+                case 10:    // Methodref
+                case 11:    // InterfaceMethodref
+                case 12:    // NameAndType
+                case 17:    // Dynamic
+                case 18:    // InvokeDynamic
+                    i += 5;
+                    break;
+
+                case 5:     // Long
+                case 6:     // Double
+                    i += 9;
+                    ++entry;
+                    break;
+
+                default:
+                    return false;
+            }
+        }
+
+        if (0 == nameIndex)
+            return false;
+
+        // access_flags, this_class, super_class, interfaces
+        i += 6;
+        if (i + 2 > n)
+            return false;
+
+        i += 2 + 2 * readU2(b, i);
+        // fields, then methods
+        for (int k = 0; k < 2; ++k) {
+            if (i + 2 > n)
+                return false;
+
+            int numMembers = readU2(b, i);
+            i += 2;
+            for (int m = 0; m < numMembers; ++m) {
+                i = skipAttributes(b, i + 6);
+                if (i < 0)
+                    return false;
+            }
+        }
+
+        if (i + 2 > n)
+            return false;
+
+        int numAttributes = readU2(b, i);
+        i += 2;
+        for (int a = 0; a < numAttributes; ++a) {
+            if (i + 6 > n)
+                return false;
+
+            if (readU2(b, i) == nameIndex)
+                return true;
+
+            i += 6 + (int) Math.min(readU4(b, i + 2) & 0xFFFFFFFFL, n);
+        }
+
+        return false;
+    }
+
+    // Returns the offset after attributes_count and the attributes starting at i, or -1 if out of bounds
+    private static int skipAttributes(byte[] b, int i) {
+
+        int n = b.length;
+        if (i + 2 > n)
+            return -1;
+
+        int numAttributes = readU2(b, i);
+        i += 2;
+        for (int a = 0; a < numAttributes; ++a) {
+            if (i + 6 > n)
+                return -1;
+
+            long next = (long) i + 6 + (readU4(b, i + 2) & 0xFFFFFFFFL);
+            if (next > n)
+                return -1;
+
+            i = (int) next;
+        }
+
+        return i;
+    }
+
+    private static boolean equals(byte[] b, int from, byte[] value) {
+
+        for (int j = 0; j < value.length; ++j) {
+            if (b[from + j] != value[j])
+                return false;
+        }
+
+        return true;
+    }
+
+    private static int readU2(byte[] b, int i) {
+        return (b[i] & 0xFF) << 8 | b[i + 1] & 0xFF;
+    }
+
+    private static int readU4(byte[] b, int i) {
+        return (b[i] & 0xFF) << 24 | (b[i + 1] & 0xFF) << 16 | (b[i + 2] & 0xFF) << 8 | b[i + 3] & 0xFF;
+    }
+}
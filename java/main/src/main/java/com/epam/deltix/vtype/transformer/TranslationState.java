@@ -26,6 +26,7 @@ import com.epam.deltix.vtype.type.TypeId;
 import com.epam.deltix.vtype.type.VariableMap;
 
 import java.util.Arrays;
+import java.util.Set;
 
 /**
  * Contains translation state that persists across method visitors working on the same class file,
@@ -36,13 +37,21 @@ import java.util.Arrays;
 class TranslationState {
     final CrudeLogger logger;
     final Mapping mapping;
-    final ClassDef classDef;
+    ClassDef classDef;
 
-    final MethodNameTransformer methodNameConverter = new MethodNameTransformer();
+    final MethodNameTransformer methodNameConverter = MethodNameTransformer.shared();
 
-    final String classPath;
+    String classPath;
     //final int classAccess;
     boolean classWasTransformed = false;
+    // Set while a class is being processed, prevents reuse of the same instance by a nested transform() call
+    boolean inUse;
+    // name + desc of the methods that use Value Types in the signature or in code, found by QuickScan. null if unknown
+    Set<String> vtMethods;
+    // Methods of this class are transformed on ParallelMethodTransformer pool
+    boolean parallelMethods;
+    // Add TransformedClassMarker attribute to the output
+    boolean markTransformed;
 
     /**
      * Linked list of ValueType fields found in the class
@@ -69,17 +78,19 @@ class TranslationState {
     final FrameMap frameMap;
     final VariableMap variableMap;
     final VarListTransformer debugVarsListTransformer;
+    final MaxsCalculator maxsCalculator = new MaxsCalculator();
+    final int[] methodArgTypes = new int[0x100];
 
     final Warnings warnings;
+    // If not null, receives warnings instead of stderr
+    WarningListener warningListener;
 
     /**
      * Prepare main entities that will be reused for the each processed method
      */
     TranslationState(String classPath, ClassDef classDef, Mapping mapping) {
 
-        this.classPath = classPath;
         this.mapping = mapping;
-        this.classDef = classDef;
         this.logger = new CrudeLogger();
 
         VariableNameDefaultFormatter varFormatter = VariableNameDefaultFormatter.get();
@@ -100,8 +111,59 @@ class TranslationState {
         // Linked list of ValueType fields found in the class
         firstVtField = new int[2][mapping.numClasses()];
         nVtFields = new int[2][mapping.numClasses()];
-        Arrays.fill(firstVtField[0], -1);
-        Arrays.fill(firstVtField[1], -1);
+        reset(classPath, classDef);
+    }
+
+
+    /**
+     * Prepare for processing of the next class. Method-level state is reset separately, in onNewMethod()
+     */
+    void reset(String classPath, ClassDef classDef) {
+
+        this.classPath = classPath;
+        this.classDef = classDef;
+        classWasTransformed = false;
+        warningListener = null;
+        vtMethods = null;
+        parallelMethods = false;
+        markTransformed = false;
+
+        if (0 != nScalarVtFields) {
+            Arrays.fill(scalarVtFieldNames, 0, nScalarVtFields, null);
+            nScalarVtFields = 0;
+        }
+
+        for (int i = 0; i < 2; ++i) {
+            Arrays.fill(firstVtField[i], -1);
+            Arrays.fill(nVtFields[i], 0);
+        }
+    }
+
+
+    /**
+     * Prepare for processing methods of the class, whose state is collected by another instance
+     */
+    void copyClassState(TranslationState from) {
+
+        reset(from.classPath, from.classDef);
+        vtMethods = from.vtMethods;
+        int n = from.nScalarVtFields;
+        if (0 != n) {
+            if (nScalarVtFieldsAllocated < n) {
+                nScalarVtFieldsAllocated = from.nScalarVtFieldsAllocated;
+                scalarVtFieldNames = new String[nScalarVtFieldsAllocated];
+                prevVtField = new int[nScalarVtFieldsAllocated];
+            }
+
+            System.arraycopy(from.scalarVtFieldNames, 0, scalarVtFieldNames, 0, n);
+            System.arraycopy(from.prevVtField, 0, prevVtField, 0, n);
+            nScalarVtFields = n;
+        }
+
+        for (int i = 0; i < 2; ++i) {
+            System.arraycopy(from.firstVtField[i], 0, firstVtField[i], 0, firstVtField[i].length);
+            System.arraycopy(from.nVtFields[i], 0, nVtFields[i], 0, nVtFields[i].length);
+        }
     }
 
 
@@ -110,10 +172,10 @@ class TranslationState {
         // Prepare for building Frame map
         warnings.clear();
         warnings.setIgnoreMask(mapping.ignoredWarnings);
+        // Stack entry names are only needed for debug output
+        stack.setTrackNames(logger.on(CrudeLogger.DBG));
         stack.resetStack();
         frameMap.clear();
-        AsmUtil.initializeMethodArguments(variableMap, methodNode, mapping);
-        frameMap.saveVarFrame();
 
         debugVarsListTransformer.init(methodNode.localVariables);
 
@@ -122,6 +184,17 @@ class TranslationState {
     }
 
 
+    /**
+     * Called before the first stack frame of a method is added to the Frame map, methods without frames don't need it
+     */
+    void onFirstFrame(MethodNode methodNode) {
+
+        // Frames are relative to the initial frame, containing the method arguments
+        AsmUtil.initializeMethodArguments(variableMap, methodNode, mapping, methodArgTypes);
+        frameMap.saveVarFrame();
+    }
+
+
     void setLogLevel(int logLevel) {
 
         // Logging level may change from method to method, so we allow updating it
@@ -156,6 +229,17 @@ class TranslationState {
     }
 
 
+    boolean hasScalarVtFields(int isStatic) {
+
+        for (int n : nVtFields[isStatic]) {
+            if (0 != n)
+                return true;
+        }
+
+        return false;
+    }
+
+
     void logScalarVtFieldCounts() {
 
         if (0 == nScalarVtFields)
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.Mapping;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Build-time index of classes that are left unchanged by the transformation, written by OfflineTransformer.
+ * The agent skips such classes without scanning them, if their class file length and CRC32 match the indexed ones.
+ * <p>
+ * Classes that use Value Types are not listed and are processed as usual, same as any class not seen at build time.
+ * The index is bound to the mapping fingerprint and is ignored if the config or Value Type classes change.
+ */
+final class UsageIndex {
+    private static final int MAGIC = 0x56545549; // "VTUI"
+    private static final int FORMAT_VERSION = 1;
+
+    // Class path -> class file length << 32 | CRC32
+    private final Map<String, Long> unchangedClasses;
+
+    private UsageIndex(Map<String, Long> unchangedClasses) {
+        this.unchangedClasses = unchangedClasses;
+    }
+
+    /**
+     * @return index, or null if it doesn't exist or was built for a different mapping
+     */
+    static UsageIndex load(Mapping mapping, ClassLoader loader) throws IOException {
+
+        File file = new File(mapping.usageIndexPath);
+        if (!file.isFile())
+            return null;
+
+        String fingerprint = MappingFingerprint.compute(mapping, loader);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (MAGIC != in.readInt() || FORMAT_VERSION != in.readInt() || !fingerprint.equals(in.readUTF()))
+                return null;
+
+            int n = in.readInt();
+            Map<String, Long> unchangedClasses = new HashMap<>(n * 4 / 3 + 1);
+            for (int i = 0; i < n; ++i) {
+                String classPath = in.readUTF();
+                unchangedClasses.put(classPath, in.readLong());
+            }
+
+            return new UsageIndex(unchangedClasses);
+        }
+    }
+
+    int size() {
+        return unchangedClasses.size();
+    }
+
+    boolean isUnchanged(String classPath, byte[] classBytes) {
+
+        Long key = unchangedClasses.get(classPath);
+        return null != key && key == keyOf(classBytes);
+    }
+
+    static long keyOf(byte[] classBytes) {
+
+        CRC32 crc = new CRC32();
+        crc.update(classBytes, 0, classBytes.length);
+        return (long) classBytes.length << 32 | crc.getValue();
+    }
+
+    /**
+     * Collects unchanged classes, thread safe
+     */
+    static final class Builder {
+        private final Map<String, Long> unchangedClasses = new ConcurrentHashMap<>();
+
+        void addUnchanged(String classPath, byte[] classBytes) {
+            unchangedClasses.put(classPath, keyOf(classBytes));
+        }
+
+        int size() {
+            return unchangedClasses.size();
+        }
+
+        void write(File file, String fingerprint) throws IOException {
+
+            File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp" + System.nanoTime());
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeUTF(fingerprint);
+                    out.writeInt(unchangedClasses.size());
+                    for (Map.Entry<String, Long> entry : unchangedClasses.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        out.writeLong(entry.getValue());
+                    }
+                }
+
+                try {
+                    Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp.toPath(), file.toPath(), REPLACE_EXISTING);
+                }
+            } finally {
+                tmp.delete();
+            }
+        }
+    }
+}
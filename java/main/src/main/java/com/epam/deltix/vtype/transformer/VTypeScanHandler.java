@@ -48,6 +48,10 @@ public class VTypeScanHandler extends EmptyOpcodeProcessor {
         return DescriptorParser.getClassTypeId(desc, mapping);
     }
 
+    void reset() {
+        hasVTypeMethodCall = hasVTypeMethodArg = hasVTypeInVars = hasVTypeInNew = hasVTypeFieldAccess = false;
+    }
+
     public boolean hasVType() {
         boolean result = hasVTypeInVars || hasVTypeMethodArg || hasVTypeMethodCall || hasVTypeInNew || hasVTypeFieldAccess;
         if (result && mapping.logAllMethods) {
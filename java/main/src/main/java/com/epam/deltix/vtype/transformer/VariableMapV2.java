@@ -671,6 +671,12 @@ public class VariableMapV2 implements VariableMap, VariableMapDbg {
         return copyTo(new TypeArray(numVars(), formatter), aSrc0, aSrc1);
     }
 
+    @Override
+    public TypeArray copyOfRange(TypeArray dst, int aSrc0, int aSrc1) {
+
+        return copyTo(dst, aSrc0, aSrc1);
+    }
+
     @Override
     public TypeArray copyAll() {
         return copyOfRange(0, topSrcAddr);
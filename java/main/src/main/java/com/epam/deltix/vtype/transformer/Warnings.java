@@ -277,7 +277,7 @@ public class Warnings {
             Object prevData = null;
             for (int j = 0, k = first[i]; k != 0; ++j, k = next[k]) {
                 Object data = this.data[k];
-                System.err.printf(null != data && !data.equals(prevData) ? "%s%d(%s)" : "%s%d", separator, lines[k],
+                out.printf(null != data && !data.equals(prevData) ? "%s%d(%s)" : "%s%d", separator, lines[k],
                         data);
                 prevData = data;
                 separator = ", ";
@@ -16,11 +16,14 @@
  */
 package com.epam.deltix.vtype.type;
 
+import com.epam.deltix.vtype.common.ConcurrentCache;
 import com.epam.deltix.vtype.mapping.Mapping;
 import com.epam.deltix.vtype.common.CrudeLogger;
 
 public class DescriptorParser {
     final static CrudeLogger log = new CrudeLogger(CrudeLogger.DBG);
+    // Used by parseMethod() when called without mapping
+    private final static ConcurrentCache<int[]> unmappedMethodCache = new ConcurrentCache<>("Parsed descriptor(no mapping)", 0x400);
 
     public void setLogLevel(int level) {
         this.log.setLogLevel(level);
@@ -36,13 +39,10 @@ public class DescriptorParser {
         return TypeId.vtValueFromIndex(TypeId.VT_WILDCARD_INDEX);
     }
 
+    private static boolean isWildcard(String desc, int from, int to) {
+        return to - from == 9 && desc.startsWith("ValueType", from);
+    }
 
-    // TODO: OPT: hash substring, return by range
-//    protected static int getTypeId(final Mapping mapping, final String classPath, final int arrayDepth) {
-//        return null == mapping ? TypeId.refOrArrayFrom(arrayDepth)
-//                : 0 == arrayDepth ? mapping.getClassTypeId(classPath)
-//                : mapping.getClassArrayTypeId(classPath, arrayDepth);
-//    }
 
     public static boolean isField64(String descr) {
         if (1 == descr.length()) {
@@ -86,10 +86,9 @@ public class DescriptorParser {
         for (; '[' == (ch = desc.charAt(i)); ++i) ;
         switch (ch) {
             case 'L': {
-                // TODO: Optimization possible here (substring -> range)
                 int end = desc.indexOf(';', i + 1);
                 if (end > 0)
-                    desc = desc.substring(i, end);
+                    return TypeId.isVt(mapping.getClassTypeId(desc, i + 1, end));
                 }
                 break;
 
@@ -135,7 +134,7 @@ public class DescriptorParser {
                 switch (ch) {
                     case 'L': {
                         int iend = desc.indexOf(';', ++i);
-                        if (TypeId.isVt(mapping.getClassTypeId(desc.substring(i, iend))))
+                        if (TypeId.isVt(mapping.getClassTypeId(desc, i, iend)))
                             return true;
 
                         i = iend;
@@ -184,7 +183,24 @@ public class DescriptorParser {
 
     public static String getTransformedDesc(final String desc, boolean isNonStaticVTypeMethod, final Mapping mapping) {
 
-        StringBuffer newDesc = new StringBuffer(32);
+        if (isNonStaticVTypeMethod)
+            return transformDesc(desc, true, mapping);
+
+        ConcurrentCache<String> cache = mapping.getTransformedDescCache();
+        String newDesc = cache.get(desc);
+        if (null == newDesc) {
+            newDesc = transformDesc(desc, false, mapping);
+            if (null != newDesc) {
+                cache.put(desc, newDesc);
+            }
+        }
+
+        return newDesc;
+    }
+
+
+    private static String transformDesc(final String desc, boolean isNonStaticVTypeMethod, final Mapping mapping) {
+
         int i = 0, n = desc.length();
 
         if (desc.charAt(0) != '(') {
@@ -192,6 +208,12 @@ public class DescriptorParser {
             return null;
         }
 
+        // Nothing to transform, return the same string
+        if (!isNonStaticVTypeMethod && !findVtInMethodDesc(desc, mapping))
+            return desc;
+
+        StringBuilder newDesc = new StringBuilder(n + 1);
+
         newDesc.append('(');
         if (isNonStaticVTypeMethod) {
             newDesc.append('J');
@@ -203,13 +225,13 @@ public class DescriptorParser {
                 case 'L': {
                     int iend = desc.indexOf(';', i + 1);
 //                   // Do not add ++i!
-                    int typeId = mapping.getClassTypeId(desc.substring(i + 1, iend));
+                    int typeId = mapping.getClassTypeId(desc, i + 1, iend);
                     //newDesc.append('L').append(mapping.getClassDefById(typeId).getDstClassPath()).append(";");
 
                     if (TypeId.isVt(typeId)) {
                         newDesc.append('J');
                     } else {
-                        newDesc.append(desc.substring(i, iend + 1));
+                        newDesc.append(desc, i, iend + 1);
                     }
                     i = iend;
                     break;
@@ -247,10 +269,9 @@ public class DescriptorParser {
         switch (ch) {
             case 'L': {
                 int iend = desc.indexOf(';', i);
-                String argClassPath = desc.substring(i, iend);
                 argType = null == mapping ?
-                        (argClassPath.equals("ValueType") ? getWildcardTypeId() : TypeId.OBJ_REF)
-                        : mapping.getClassTypeId(argClassPath);
+                        (isWildcard(desc, i, iend) ? getWildcardTypeId() : TypeId.OBJ_REF)
+                        : mapping.getClassTypeId(desc, i, iend);
                 i = iend + 1;
                 break;
             }
@@ -298,6 +319,29 @@ public class DescriptorParser {
      */
     public static int parseMethod(int[] parsedArgs, int nUsedArgs, final String desc, final Mapping mapping) {
 
+        ConcurrentCache<int[]> cache = null != mapping ? mapping.getParsedMethodCache() : unmappedMethodCache;
+        int[] parsed = cache.get(desc);
+        if (null != parsed) {
+            int nArgs = parsed.length - 1;
+            parsedArgs[0] = parsed[0];
+            System.arraycopy(parsed, 1, parsedArgs, nUsedArgs + 1, nArgs);
+            return nUsedArgs + nArgs;
+        }
+
+        int nParms = parseMethodDesc(parsedArgs, nUsedArgs, desc, mapping);
+        if (-1 != nParms) {
+            parsed = new int[nParms - nUsedArgs + 1];
+            parsed[0] = parsedArgs[0];
+            System.arraycopy(parsedArgs, nUsedArgs + 1, parsed, 1, nParms - nUsedArgs);
+            cache.put(desc, parsed);
+        }
+
+        return nParms;
+    }
+
+
+    private static int parseMethodDesc(int[] parsedArgs, int nUsedArgs, final String desc, final Mapping mapping) {
+
         if(desc.charAt(0) == '(') {
             for (int i = 1, j = nUsedArgs, nParms = 0;;) {
                 int argType;
@@ -18,44 +18,77 @@ package com.epam.deltix.vtype.type;
 
 import org.objectweb.asm.tree.LabelNode;
 
+import java.util.Arrays;
+
 import static com.epam.deltix.vtype.common.Utils.reverse;
 
 public class FrameEntry {
 
     private final VariableNameFormatter formatter; // For debug string generation and logging etc.
-    public final LabelNode label;
+    public LabelNode label;
 
-    protected final String[] stackNames;
-    protected final int[] stackTypes;
+    // Arrays are reused by set() and may be longer than the number of entries
+    protected String[] stackNames;
+    protected int[] stackTypes;
 
-    protected final String[] varNames;
-    protected final int[] varTypes;
+    protected String[] varNames;
+    protected int[] varTypes;
 
-    protected final int numVars;
-    protected final int numStack;
+    protected int numVars;
+    protected int numStack;
 
     public FrameEntry(LabelNode label,
                       int numStackEntries, int[] stackTypes, String[] stackNames,
                       int numVarEntries, int[] varTypes, String[] varNames,
                       VariableNameFormatter formatter) {
 
-        this.label = label;
+        this(formatter);
+        set(label, numStackEntries, stackTypes, stackNames, numVarEntries, varTypes, varNames);
+    }
+
+    FrameEntry(VariableNameFormatter formatter) {
+
         this.formatter = formatter;
+        this.stackTypes = new int[0];
+        this.stackNames = new String[0];
+        this.varTypes = new int[0];
+        this.varNames = new String[0];
+    }
+
+    /**
+     * Overwrite this entry with a copy of the specified stack and local variable frame, reusing the arrays if they are large enough
+     */
+    void set(LabelNode label,
+             int numStackEntries, int[] stackTypes, String[] stackNames,
+             int numVarEntries, int[] varTypes, String[] varNames) {
+
+        this.label = label;
 
         this.numStack = numStackEntries;
-        this.stackTypes = new int[numStackEntries];
-        this.stackNames = new String[numStackEntries];
+        if (this.stackTypes.length < numStackEntries) {
+            this.stackTypes = new int[numStackEntries];
+            this.stackNames = new String[numStackEntries];
+        }
+
         if (0 != numStackEntries) {
             System.arraycopy(stackTypes, 0, this.stackTypes, 0, numStackEntries);
-            System.arraycopy(stackNames, 0, this.stackNames, 0, numStackEntries);
+            // Stack names are null if not tracked
+            if (null != stackNames) {
+                System.arraycopy(stackNames, 0, this.stackNames, 0, numStackEntries);
+            } else {
+                Arrays.fill(this.stackNames, 0, numStackEntries, null);
+            }
             // Will simplify iteration in the future
             reverse(this.stackTypes, numStackEntries);
             reverse(this.stackNames, numStackEntries);
         }
 
         this.numVars = numVarEntries;
-        this.varTypes = new int[numVarEntries];
-        this.varNames = new String[numVarEntries];
+        if (this.varTypes.length < numVarEntries) {
+            this.varTypes = new int[numVarEntries];
+            this.varNames = new String[numVarEntries];
+        }
+
         if (0 != numVarEntries) {
             System.arraycopy(varTypes, 0, this.varTypes, 0, numVarEntries);
             System.arraycopy(varNames, 0, this.varNames, 0, numVarEntries);
@@ -78,10 +111,22 @@ public class FrameEntry {
         return new TypeArray(varTypes, varNames, startOffset, endOffset - startOffset);
     }
 
+    public TypeArray copyOfVarRange(TypeArray dst, int startOffset, int endOffset) {
+
+        dst.assign(varTypes, varNames, startOffset, endOffset - startOffset);
+        return dst;
+    }
+
     public TypeArray copyOfStackRange(int startOffset, int endOffset) {
         return new TypeArray(stackTypes, stackNames, startOffset, endOffset - startOffset);
     }
 
+    public TypeArray copyOfStackRange(TypeArray dst, int startOffset, int endOffset) {
+
+        dst.assign(stackTypes, stackNames, startOffset, endOffset - startOffset);
+        return dst;
+    }
+
     public int getNumStackEntries() {
         return numStack;
     }
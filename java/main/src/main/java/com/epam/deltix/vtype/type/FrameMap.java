@@ -21,6 +21,7 @@ import com.epam.deltix.vtype.mapping.Mapping;
 import com.epam.deltix.vtype.common.CrudeLogger;
 import org.objectweb.asm.tree.*;
 
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
 
 import static com.epam.deltix.vtype.transformer.AsmUtil.stackFrameToString;
@@ -37,6 +38,9 @@ public class FrameMap {
     private TypeArray savedLocalVarFrame;
     private JvmStack.SavedStack savedStack;
     private final IdentityHashMap<LabelNode, FrameEntry> frames;
+    // Entries are reused by the next methods, after clear()
+    private final ArrayList<FrameEntry> entryPool;
+    private int numUsedEntries;
     private TypeArray tmpTypeArray;
 
     public FrameMap(final VariableMap vars, final JvmStack stack, final Mapping mapping,
@@ -51,6 +55,7 @@ public class FrameMap {
 
         savedLocalVarFrame = new TypeArray(0x20, formatter);
         this.frames = new IdentityHashMap<>(0x20);
+        this.entryPool = new ArrayList<>(0x20);
 
         savedStack = vm.saveStack(); // Only done once
     }
@@ -59,6 +64,12 @@ public class FrameMap {
     public void clear() {
 
         frames.clear();
+        // Don't keep the previous method's instructions reachable
+        for (int i = 0; i < numUsedEntries; ++i) {
+            entryPool.get(i).label = null;
+        }
+
+        numUsedEntries = 0;
         vars.clear();
         saveVarFrame();
         resetAndSaveStackFrame();
@@ -173,12 +184,25 @@ public class FrameMap {
 
         TypeArray tmp = tmpTypeArray;
         vars.saveTo(tmp);
-        FrameEntry entry = new FrameEntry(label,
+        FrameEntry entry = newFrameEntry();
+        entry.set(label,
                 savedStack.top, savedStack.types, savedStack.names,
-                tmp.length(), tmp.types, tmp.names, formatter);
+                tmp.length(), tmp.types, tmp.names);
 
         frames.put(label, entry);
-        log.trace("Add StackFrame for label %s - %s", label.getLabel(), entry);
+        if (log.on(CrudeLogger.TRACE)) {
+            log.trace("Add StackFrame for label %s - %s", label.getLabel(), entry);
+        }
+    }
+
+
+    private FrameEntry newFrameEntry() {
+
+        if (numUsedEntries == entryPool.size()) {
+            entryPool.add(new FrameEntry(formatter));
+        }
+
+        return entryPool.get(numUsedEntries++);
     }
 
 
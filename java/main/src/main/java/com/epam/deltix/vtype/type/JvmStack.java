@@ -23,6 +23,8 @@ import com.epam.deltix.vtype.common.CrudeLogger;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.tree.*;
 
+import java.util.Arrays;
+
 import static com.epam.deltix.vtype.transformer.AsmUtil.frameEntryEnumToTypeId;
 
 /**
@@ -37,9 +39,10 @@ public class JvmStack {
     private final CrudeLogger log;
     private final VariableNameFormatter formatter;
 
-    final static int maxStackDepth = 0x10000;
+    // Grows on demand, real methods rarely use more than a few dozen stack cells
+    final static int initialStackDepth = 0x20;
 
-    private String names[] = null;   // Just for debugging
+    private String names[] = null;   // Just for debugging, null if names are not tracked
     private int types[] = null;
 
     private int top;            // Actual stack pointer
@@ -53,7 +56,6 @@ public class JvmStack {
         int top, top32Dst, top32Src;
 
         SavedStack() {
-            this.names = new String[32];
             this.types = new int[32];
         }
 
@@ -61,10 +63,12 @@ public class JvmStack {
             this.top  = top;
             this.top32Dst = top32Dst;
             this.top32Src = top32Src;
-            this.names = new String[top];
             this.types = new int[top];
             System.arraycopy(types, 1, this.types, 0, top);
-            System.arraycopy(names, 1, this.names, 0, top);
+            if (null != names) {
+                this.names = new String[top];
+                System.arraycopy(names, 1, this.names, 0, top);
+            }
         }
     }
 
@@ -75,8 +79,34 @@ public class JvmStack {
         setLogLevel(logger.getLevel());
 
         this.formatter = null != formatter ? formatter : VariableNameDefaultFormatter.get();
-        types = new int[maxStackDepth];
-        names = new String[maxStackDepth];
+        types = new int[initialStackDepth];
+        names = new String[initialStackDepth];
+    }
+
+    /**
+     * Stack entry names are only used for logging, tracking them can be turned off when logging is disabled.
+     * When off, nameAt() returns null
+     */
+    public void setTrackNames(boolean trackNames) {
+
+        if (trackNames != (null != names)) {
+            names = trackNames ? new String[types.length] : null;
+        }
+    }
+
+    public boolean isTrackingNames() {
+        return null != names;
+    }
+
+    private void reserve(int maxTop) {
+
+        if (maxTop >= types.length) {
+            int size = Math.max(maxTop + 1, types.length * 2);
+            types = Arrays.copyOf(types, size);
+            if (null != names) {
+                names = Arrays.copyOf(names, size);
+            }
+        }
     }
 
     public void setLogLevel(int level) {
@@ -126,12 +156,19 @@ public class JvmStack {
 
         if (saved.types.length < top) {
             saved.types = new int[top * 2];
-            saved.names = new String[top * 2];
+        }
+
+        if (null == this.names) {
+            saved.names = null;
+        } else if (null == saved.names || saved.names.length < saved.types.length) {
+            saved.names = new String[saved.types.length];
         }
 
         if (0 != top) {
             System.arraycopy(this.types, 1, saved.types, 0, top);
-            System.arraycopy(this.names, 1, saved.names, 0, top);
+            if (null != saved.names) {
+                System.arraycopy(this.names, 1, saved.names, 0, top);
+            }
         }
 
         //log.trace("SaveStack:" + this.toString());
@@ -145,8 +182,15 @@ public class JvmStack {
         this.top32Dst = saved.top32Dst;
         this.top32Src = saved.top32Src;
         if (0 != top) {
+            reserve(top);
             System.arraycopy(saved.types, 0, this.types, 1, top);
-            System.arraycopy(saved.names, 0, this.names, 1, top);
+            if (null != this.names) {
+                if (null != saved.names) {
+                    System.arraycopy(saved.names, 0, this.names, 1, top);
+                } else {
+                    Arrays.fill(this.names, 1, top + 1, null);
+                }
+            }
         }
 
         if (logTrace) {
@@ -177,7 +221,9 @@ public class JvmStack {
     }
 
     public void renameTop(String name) {
-        names[top] = name;
+        if (null != names) {
+            names[top] = name;
+        }
     }
 
 
@@ -195,9 +241,15 @@ public class JvmStack {
     void _push(int typeId, String desc) {
 
         incrementSimulatedTop(typeId);
-        ++top;
+        int top = ++this.top;
+        if (top >= types.length) {
+            reserve(top);
+        }
+
         types[top] = typeId;
-        this.names[top] = desc;
+        if (null != names) {
+            names[top] = desc;
+        }
     }
 
 
@@ -212,9 +264,12 @@ public class JvmStack {
 
     void _swap() {
         assert(top > 1);
-        String name = names[top];
-        names[top] = names[top - 1];
-        names[top - 1] = name;
+        if (null != names) {
+            String name = names[top];
+            names[top] = names[top - 1];
+            names[top - 1] = name;
+        }
+
         int v = types[top];
         types[top] = types[top - 1];
         types[top - 1] = v;
@@ -229,18 +284,24 @@ public class JvmStack {
         assert (step > 0);
         assert(top > depth);    // There must be at least depth + 1 items on the stack
 
+        reserve(top + step);
+        int[] types = this.types;
+        String[] names = this.names;
         int src = top - depth - step + 1;
         int dst = src + step;
         for (int i = top - src; i >= 0; --i) {
             types[dst + i] = types[src + i];
-            names[dst + i] = names[src + i];
+        }
+
+        if (null != names) {
+            System.arraycopy(names, src, names, dst, top - src + 1);
+            System.arraycopy(names, top + 1, names, src, step);
         }
 
         dst = src;
         src = top + 1;
         top += step;
         for (int i = 0; i < step; ++i) {
-            names[dst + i] = names[src + i];
             int x = types[dst + i] = types[src + i];
             incrementSimulatedTop(x);
         }
@@ -261,7 +322,7 @@ public class JvmStack {
 
         if (log.on(log.TRACE)) {
             int typeId = types[top];
-            String name = names[top];
+            String name = nameAt(0);
             _pop();
             log.trace("Pop '%s', result: %s", formatter.format(typeId, name, -1), this);
         } else {
@@ -290,7 +351,7 @@ public class JvmStack {
     }
 
     public String nameAt(int depth) {
-        return names[top - depth];
+        return null != names ? names[top - depth] : null;
     }
 
 
@@ -380,7 +441,7 @@ public class JvmStack {
 
         if (isTypeDst32at(0)) {
             trace("DUP32");
-            _push(types[top], names[top]);
+            _push(types[top], nameAt(0));
         } else {
             handler.onStackTypeMismatch();
         }
@@ -413,7 +474,7 @@ public class JvmStack {
 
         if (isTypeDst64at(0)) {
             trace("DUP64");
-            _push(types[top], names[top]);
+            _push(types[top], nameAt(0));
         } else {
             handler.onStackTypeMismatch();
         }
@@ -428,12 +489,12 @@ public class JvmStack {
         assert (top > 0);
         if (isTypeSrc64at(0)) {
             log.trace("DUP2(64)");
-            _push(types[top], names[top]);
+            _push(types[top], nameAt(0));
 
         } else if (isTypeSrc32at(1)) {
             log.trace("DUP2(2x32)");
-            _push(types[top - 1], names[top - 1]);
-            _push(types[top - 1], names[top - 1]);
+            _push(types[top - 1], nameAt(1));
+            _push(types[top - 1], nameAt(1));
         } else {
             handler.onStackTypeMismatch();
         }
@@ -751,7 +812,7 @@ public class JvmStack {
         for (int i = 1; i <= top; ++i) {
             char ch = 0;
             if (i > 1) s.append(',');
-            s.append(getName(types[i], names[i]));
+            s.append(getName(types[i], null != names ? names[i] : null));
         }
 
         return s.append('}').toString();
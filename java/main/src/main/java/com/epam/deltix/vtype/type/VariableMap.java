@@ -84,6 +84,12 @@ public interface VariableMap {
      */
     TypeArray copyOfRange(int begin, int end);
 
+    /**
+     * Same as copyOfRange(begin, end), but copies into an existing array, avoiding allocation
+     * @return dst
+     */
+    TypeArray copyOfRange(TypeArray dst, int begin, int end);
+
     TypeArray copyAll();
 
     void saveTo(TypeArray dst);
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.test;
+
+import com.epam.deltix.vtype.annotations.ValueType;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lazy initialization of a Value Type, whose class initializer loads another class that uses the same Value Type.
+ * Runs a separate instance of the agent, loaded by its own class loader, because the mapping is static.
+ */
+public class LazyInitializationTest {
+
+    private static final String TRANSFORMER_CLASS = "com.epam.deltix.vtype.transformer.ClassFileTransformer";
+    private static final String PREFIX = LazyInitializationTest.class.getName() + "$";
+
+    public static final class Value {
+        static {
+            // Loaded while the NULL constant of this Value Type is being obtained
+            User.touch();
+        }
+
+        final long value;
+
+        Value(long value) {
+            this.value = value;
+        }
+
+        @ValueType(impl = "identity")
+        public static Value fromLong(long value) {
+            return new Value(value);
+        }
+
+        @ValueType(impl = "identity")
+        public static long toLong(Value value) {
+            return null == value ? Utils.NULL : value.value;
+        }
+    }
+
+    public static final class Utils {
+        public static final long NULL = 0x7777_0000_0000_0001L;
+
+        public static boolean isNull(long value) {
+            return NULL == value;
+        }
+
+        public static long identity(long value) {
+            return value;
+        }
+    }
+
+    // Value Type fields are initialized with the NULL constant by the transformed class initializer
+    public static final class User {
+        static final long LOADED_AT = System.nanoTime();
+        static Value field;
+
+        static void touch() {
+        }
+
+        public static long nullValue() {
+            return Value.toLong(field);
+        }
+    }
+
+    public static final class Trigger {
+        static final long LOADED_AT = System.nanoTime();
+        static Value field;
+
+        public static long nullValue() {
+            return Value.toLong(field);
+        }
+    }
+
+    // Defines the test classes, passing them through the transformer, as the JVM would do with the agent attached
+    private static final class TransformingClassLoader extends ClassLoader {
+        final java.lang.instrument.ClassFileTransformer transformer;
+        final List<String> loaded = new ArrayList<>();
+        final List<String> transformed = new ArrayList<>();
+
+        TransformingClassLoader(java.lang.instrument.ClassFileTransformer transformer) {
+            super(LazyInitializationTest.class.getClassLoader());
+            this.transformer = transformer;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+
+            if (!name.startsWith(PREFIX))
+                return super.loadClass(name, resolve);
+
+            Class<?> cl = findLoadedClass(name);
+            if (null != cl)
+                return cl;
+
+            try {
+                byte[] data = readResource(name.replace('.', '/') + ".class");
+                byte[] result = transformer.transform(this, name.replace('.', '/'), null, null, data);
+                loaded.add(name.substring(PREFIX.length()));
+                if (null != result) {
+                    transformed.add(name.substring(PREFIX.length()));
+                    data = result;
+                }
+
+                return defineClass(name, data, 0, data.length);
+            } catch (Exception e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+
+        private byte[] readResource(String path) throws IOException {
+
+            try (InputStream in = getResourceAsStream(path)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[0x1000];
+                for (int n; (n = in.read(buffer)) > 0;) {
+                    out.write(buffer, 0, n);
+                }
+
+                return out.toByteArray();
+            }
+        }
+    }
+
+    @Test
+    public void testNestedLoad() throws Exception {
+
+        File config = File.createTempFile("vt-lazy", ".json");
+        try {
+            String value = PREFIX.replace('.', '/') + "Value";
+            String json = "{ \"lazyInitialization\" : true, \"logSuccesses\" : false, \"mappings\" : [ {"
+                    + " \"name\" : \"" + value + "\", \"implementation\" : \"" + PREFIX.replace('.', '/') + "Utils\","
+                    + " \"box\" : \"" + value + " " + value + ".fromLong(J)\","
+                    + " \"unbox\" : \"J " + value + ".toLong(L" + value + ";)\" } ] }";
+            Files.write(config.toPath(), json.getBytes(StandardCharsets.UTF_8));
+
+            Class<?> agentClass = Class.forName(TRANSFORMER_CLASS);
+            try (URLClassLoader agentLoader = new URLClassLoader(new URL[] {
+                    location(agentClass), location(ClassReader.class), location(ClassNode.class),
+                    location(JSONObject.class) }, ClassLoader.getSystemClassLoader().getParent())) {
+
+                Class<?> transformerClass = agentLoader.loadClass(TRANSFORMER_CLASS);
+                Constructor<?> constructor = transformerClass.getDeclaredConstructor(String.class);
+                constructor.setAccessible(true);
+                Object transformer = constructor.newInstance(config.getPath());
+                TransformingClassLoader loader = new TransformingClassLoader((java.lang.instrument.ClassFileTransformer) transformer);
+                Method readClasses = transformerClass.getDeclaredMethod("readClasses", ClassLoader.class);
+                readClasses.setAccessible(true);
+                readClasses.invoke(transformer, loader);
+
+                Class<?> trigger = loader.loadClass(PREFIX + "Trigger");
+                Class<?> user = loader.loadClass(PREFIX + "User");
+                assertTrue(loader.loaded.toString(), loader.loaded.indexOf("User") < loader.loaded.indexOf("Trigger"));
+                assertTrue(loader.transformed.toString(), loader.transformed.contains("Trigger"));
+
+                // User is loaded before the NULL constant is known, it must be left unchanged or get the right constant
+                assertEquals(Utils.NULL, trigger.getMethod("nullValue").invoke(null));
+                assertEquals(Utils.NULL, user.getMethod("nullValue").invoke(null));
+            }
+        } finally {
+            config.delete();
+        }
+    }
+
+    private static URL location(Class<?> cl) throws IOException {
+        return cl.getProtectionDomain().getCodeSource().getLocation();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.test;
+
+import com.epam.deltix.dt.DateTime;
+import com.epam.deltix.vtype.annotations.ValueTypeSuppressWarnings;
+
+/**
+ * Runs without the agent, from the offline transformed classes, as a native image or on JVM.
+ * Exits with code 1 if Value Types are not transformed.
+ */
+public class NativeImageSample {
+
+    @ValueTypeSuppressWarnings({"refCompare"})
+    public static void main(String[] args) {
+
+        boolean transformed = DateTime.create(0x12345678) == DateTime.create(0x12345678);
+
+        DateTime[] days = new DateTime[7];
+        DateTime dt = DateTime.create(0);
+        for (int i = 0; i < days.length; i++) {
+            days[i] = dt;
+            dt = dt.addDays(1);
+        }
+
+        System.out.println("First day: " + days[0].toString());
+        System.out.println("Last day: " + days[days.length - 1].toString());
+        System.out.println("Value Types transformed: " + transformed);
+        if (!transformed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.Mapping;
+import com.epam.deltix.vtype.mapping.MappingReader;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClassCacheTest {
+    private static final long MILLIS_PER_HOUR = 3600 * 1000;
+
+    private static byte[] classBytes(Class<?> cl) throws IOException {
+
+        try (InputStream in = cl.getResourceAsStream(cl.getSimpleName() + ".class")) {
+            return OfflineTransformer.readFully(in);
+        }
+    }
+
+    private static File entryFile(File root, String fingerprint, String key) {
+        return new File(new File(new File(root, fingerprint), key.substring(0, 2)), key.substring(2) + ".class");
+    }
+
+    private static void deleteAll(File file) {
+
+        File[] files = file.listFiles();
+        if (null != files) {
+            for (File f : files) {
+                deleteAll(f);
+            }
+        }
+
+        file.delete();
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+
+        File root = Files.createTempDirectory("vt-class-cache").toFile();
+        try {
+            ClassCache cache = new ClassCache(root, "fp", 30);
+            byte[] original = classBytes(ClassCacheTest.class);
+            byte[] transformed = classBytes(ClassCache.class);
+            String key = cache.keyOf(original);
+            assertEquals(key, cache.keyOf(original.clone()));
+            assertFalse(key.equals(cache.keyOf(transformed)));
+
+            assertNull(cache.get(key));
+            cache.put(key, transformed);
+            byte[] cached = cache.get(key);
+            assertTrue(ClassCache.isTransformed(cached));
+            assertArrayEquals(transformed, cached);
+            assertTrue(entryFile(root, "fp", key).isFile());
+
+            // Same directory, as used by another JVM
+            assertArrayEquals(transformed, new ClassCache(root, "fp", 30).get(key));
+
+            assertEquals(1, cache.getNumHits());
+            assertEquals(1, cache.getNumMisses());
+            assertEquals(1, cache.getNumStored());
+        } finally {
+            deleteAll(root);
+        }
+    }
+
+    @Test
+    public void testUnchanged() throws IOException {
+
+        File root = Files.createTempDirectory("vt-class-cache").toFile();
+        try {
+            ClassCache cache = new ClassCache(root, "fp", 30);
+            String key = cache.keyOf(classBytes(ClassCacheTest.class));
+            cache.put(key, null);
+            assertEquals(0, entryFile(root, "fp", key).length());
+
+            byte[] cached = cache.get(key);
+            assertNotNull(cached);
+            assertFalse(ClassCache.isTransformed(cached));
+
+            // Damaged entry is a miss
+            Files.write(entryFile(root, "fp", key).toPath(), new byte[] { 1, 2, 3, 4, 5 });
+            assertNull(cache.get(key));
+            assertFalse(entryFile(root, "fp", key).exists());
+        } finally {
+            deleteAll(root);
+        }
+    }
+
+    @Test
+    public void testFingerprintChange() throws IOException {
+
+        File dir = Files.createTempDirectory("vt-class-cache").toFile();
+        File root = new File(dir, "cache");
+        File config = new File(dir, "valuetypes.json");
+        String json = "{ \"classCachePath\" : \"" + root.getPath().replace("\\", "\\\\") + "\", \"mappings\" : [] }";
+        try {
+            Files.write(config.toPath(), json.getBytes(StandardCharsets.UTF_8));
+            Mapping mapping = MappingReader.parse(config.getPath());
+            ClassLoader loader = getClass().getClassLoader();
+            ClassCache cache = ClassCache.create(mapping, loader);
+            String key = cache.keyOf(classBytes(ClassCacheTest.class));
+            cache.put(key, classBytes(ClassCache.class));
+            assertNotNull(ClassCache.create(mapping, loader).get(key));
+
+            // Results are not used with a different config
+            Files.write(config.toPath(), json.replace("[]", "[ ]").getBytes(StandardCharsets.UTF_8));
+            assertNull(ClassCache.create(MappingReader.parse(config.getPath()), loader).get(key));
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void testExpiry() throws IOException {
+
+        File root = Files.createTempDirectory("vt-class-cache").toFile();
+        try {
+            ClassCache cache = new ClassCache(root, "fp", 1);
+            String used = cache.keyOf(new byte[] { 1 });
+            String expired = cache.keyOf(new byte[] { 2 });
+            cache.put(used, null);
+            cache.put(expired, null);
+            long now = System.currentTimeMillis();
+            assertTrue(entryFile(root, "fp", used).setLastModified(now - 12 * MILLIS_PER_HOUR));
+            assertTrue(entryFile(root, "fp", expired).setLastModified(now - 25 * MILLIS_PER_HOUR));
+
+            // Entries of a different fingerprint expire too, its directory is deleted when empty
+            ClassCache old = new ClassCache(root, "old", 1);
+            String oldKey = old.keyOf(new byte[] { 3 });
+            old.put(oldKey, null);
+            assertTrue(entryFile(root, "old", oldKey).setLastModified(now - 25 * MILLIS_PER_HOUR));
+
+            // Hit refreshes the entry, that is not used for more than 1/4 of the max age
+            assertNotNull(cache.get(used));
+            assertTrue(entryFile(root, "fp", used).lastModified() > now - MILLIS_PER_HOUR);
+
+            cache.sweep();
+            assertTrue(entryFile(root, "fp", used).isFile());
+            assertFalse(entryFile(root, "fp", expired).exists());
+            assertFalse(new File(root, "old").exists());
+            assertNotNull(cache.get(used));
+            assertNull(cache.get(expired));
+        } finally {
+            deleteAll(root);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.ClassNameFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClassNameFilterTest {
+
+    @Test
+    public void testExcludePatterns() {
+
+        ClassNameFilter f = new ClassNameFilter()
+                .exclude("java/**")
+                .exclude("com.foo.")
+                .exclude("com/bar/Baz")
+                .exclude("org/x/*Impl")
+                .exclude("**Generated");
+
+        assertTrue(f.isExcluded("java/lang/String"));
+        assertTrue(f.isExcluded("com/foo/a/b/C"));
+        assertTrue(f.isExcluded("com/bar/Baz"));
+        assertTrue(f.isExcluded("org/x/FooImpl"));
+        assertTrue(f.isExcluded("org/x/Impl"));
+        assertTrue(f.isExcluded("a/b/CGenerated"));
+
+        assertFalse(f.isExcluded("javax/Foo"));
+        assertFalse(f.isExcluded("com/foobar/C"));
+        assertFalse(f.isExcluded("com/bar/Baz$1"));
+        assertFalse(f.isExcluded("com/bar/Ba"));
+        assertFalse(f.isExcluded("org/x/y/FooImpl"));
+        assertFalse(f.isExcluded("org/x/FooImpl2"));
+        assertFalse(f.isExcluded("a/b/Generated2"));
+    }
+
+    @Test
+    public void testIncludePatterns() {
+
+        ClassNameFilter f = new ClassNameFilter()
+                .include("com/shop/**")
+                .exclude("com/shop/internal/**");
+
+        assertFalse(f.isExcluded("com/shop/Order"));
+        assertFalse(f.isExcluded("com/shop/a/Order$1"));
+        assertTrue(f.isExcluded("com/shop/internal/Cache"));
+        assertTrue(f.isExcluded("com/other/Order"));
+        assertTrue(f.isExcluded("com/sho"));
+
+        assertEquals(ClassNameFilter.INCLUDE | ClassNameFilter.EXCLUDE, f.match("com/shop/internal/X"));
+        assertEquals(0, new ClassNameFilter().match("com/shop/X"));
+    }
+}
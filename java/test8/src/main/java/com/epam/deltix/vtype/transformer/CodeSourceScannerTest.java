@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CodeSourceScannerTest {
+
+    private static CodeSourceScanner scanner(String pattern) {
+        return new CodeSourceScanner(new ConstantPoolScanner(Collections.singletonList(pattern)), false);
+    }
+
+    @Test
+    public void testJar() throws IOException {
+
+        byte[] data;
+        try (InputStream in = getClass().getResourceAsStream("CodeSourceScannerTest.class")) {
+            data = OfflineTransformer.readFully(in);
+        }
+
+        File jar = File.createTempFile("vt-code-source", ".jar");
+        try {
+            try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+                out.putNextEntry(new ZipEntry("foo/A.class"));
+                out.write(data);
+                out.putNextEntry(new ZipEntry("META-INF/versions/11/foo/B.class"));
+                out.write(data);
+            }
+
+            ProtectionDomain domain = new ProtectionDomain(new CodeSource(jar.toURI().toURL(), (Certificate[]) null), null);
+            CodeSourceScanner clean = scanner("java/io/" + getClass().getSimpleName().substring(0, 8));
+            assertTrue(clean.isClean(domain, "foo/A"));
+            assertTrue(clean.isClean(domain, "foo/B"));
+            // Not from this jar, may be generated at runtime
+            assertFalse(clean.isClean(domain, "foo/C"));
+            assertFalse(clean.isClean(null, "foo/A"));
+
+            CodeSourceScanner dirty = scanner("java/util/zip/ZipOutputStream");
+            assertFalse(dirty.isClean(domain, "foo/A"));
+        } finally {
+            jar.delete();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConstantPoolScannerTest {
+
+    private static ConstantPoolScanner scanner(String... patterns) {
+        return new ConstantPoolScanner(Arrays.asList(patterns));
+    }
+
+    // Minimal class file header followed by a constant pool with the given strings, a long and a class reference
+    private static byte[] classFile(String... strings) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        out.writeShort(1 + 2 + 1 + strings.length);
+        out.writeByte(5);
+        out.writeLong(0x0101010101010101L);
+        out.writeByte(7);
+        out.writeShort(4);
+        for (String s : strings) {
+            out.writeByte(1);
+            out.writeUTF(s);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testSyntheticConstantPool() throws IOException {
+
+        ConstantPoolScanner s = scanner("a/Price64", "bc", "ValueTypeTrace;");
+
+        assertTrue(s.mayReferenceValueTypes(classFile("foo", "(La/Price64;)V")));
+        assertTrue(s.mayReferenceValueTypes(classFile("[[La/Price64;")));
+        assertTrue(s.mayReferenceValueTypes(classFile("xabcx")));
+        assertTrue(s.mayReferenceValueTypes(classFile("Lcom/foo/ValueTypeTrace;")));
+        assertTrue(s.mayReferenceValueTypes(classFile("\u0444a/Price64")));
+
+        assertFalse(s.mayReferenceValueTypes(classFile()));
+        assertFalse(s.mayReferenceValueTypes(classFile("a/Price6", "4")));
+        assertFalse(s.mayReferenceValueTypes(classFile("b", "c", "a/Price32", "ValueTypeTrac")));
+        // Unparseable data is never rejected
+        assertTrue(s.mayReferenceValueTypes(new byte[] { 1, 2, 3 }));
+        assertTrue(s.mayReferenceValueTypes(Arrays.copyOf(classFile("foo"), 20)));
+    }
+
+    @Test
+    public void testFindPatterns() throws IOException {
+
+        // "b/Price64" is a suffix of "ab/Price64", "Price" is a part of both
+        ConstantPoolScanner s = scanner("a/Price64", "ab/Price64", "b/Price64", "Price");
+        BitSet found = new BitSet();
+
+        assertTrue(s.findPatterns(classFile("(Lab/Price64;)V"), found));
+        assertEquals("{1, 2, 3}", found.toString());
+
+        found.clear();
+        assertTrue(s.findPatterns(classFile("foo", "[La/Price64;", "b/Price6"), found));
+        assertEquals("{0, 3}", found.toString());
+
+        found.clear();
+        assertTrue(s.findPatterns(classFile("a/Pric", "e64"), found));
+        assertTrue(found.isEmpty());
+
+        assertFalse(s.findPatterns(new byte[] { 1, 2, 3 }, found));
+    }
+
+    @Test
+    public void testRealClassFile() throws IOException {
+
+        byte[] data;
+        try (InputStream in = getClass().getResourceAsStream("ConstantPoolScannerTest.class")) {
+            data = OfflineTransformer.readFully(in);
+        }
+
+        assertTrue(scanner("com/epam/deltix/vtype/transformer/ConstantPoolScanner").mayReferenceValueTypes(data));
+        assertTrue(scanner("java/io/DataOutputStream").mayReferenceValueTypes(data));
+        // String literals of this class are also in its constant pool, so the missing name is built at runtime
+        String missing = "java/io/" + getClass().getSimpleName().substring(0, 8);
+        assertFalse(scanner(missing).mayReferenceValueTypes(data));
+    }
+}
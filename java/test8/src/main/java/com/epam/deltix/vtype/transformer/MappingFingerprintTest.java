@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.Mapping;
+import com.epam.deltix.vtype.mapping.MappingReader;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MappingFingerprintTest {
+
+    @Test
+    public void testFingerprint() throws IOException {
+
+        File config = File.createTempFile("vt-fingerprint", ".json");
+        String json = "{ \"mappings\" : [ { \"name\" : \"com/epam/deltix/vtype/ValueType64\","
+                + " \"implementation\" : \"com/epam/deltix/vtype/ValueType64Utils\","
+                + " \"box\" : \"com/epam/deltix/vtype/ValueType64 com/epam/deltix/vtype/ValueType64.fromValue(J)\","
+                + " \"unbox\" : \"J com/epam/deltix/vtype/ValueType64.getValue(Lcom/epam/deltix/vtype/ValueType64;)\" } ] }";
+        try (URLClassLoader empty = new URLClassLoader(new URL[0], null)) {
+            Files.write(config.toPath(), json.getBytes(StandardCharsets.UTF_8));
+            Mapping mapping = MappingReader.parse(config.getPath());
+            ClassLoader loader = getClass().getClassLoader();
+            String fingerprint = MappingFingerprint.compute(mapping, loader);
+            assertEquals(40, fingerprint.length());
+            assertEquals(fingerprint, MappingFingerprint.compute(MappingReader.parse(config.getPath()), loader));
+
+            // Value Type classes are a part of the fingerprint
+            assertFalse(fingerprint.equals(MappingFingerprint.compute(mapping, empty)));
+
+            Files.write(config.toPath(), json.replace(" ] }", "] }").getBytes(StandardCharsets.UTF_8));
+            assertFalse(fingerprint.equals(MappingFingerprint.compute(MappingReader.parse(config.getPath()), loader)));
+        } finally {
+            config.delete();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.dt.DateTime;
+import com.epam.deltix.vtype.mapping.ClassDef;
+import com.epam.deltix.vtype.mapping.Mapping;
+import com.epam.deltix.vtype.mapping.MappingReader;
+import com.epam.deltix.vtype.mapping.MappingSnapshot;
+import com.epam.deltix.vtype.mapping.MethodDef;
+import com.epam.deltix.vtype.mapping.MethodMap;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappingSnapshotTest {
+
+    private static final String CONFIG = "{ \"mappings\" : [\n"
+            + "  { \"name\" : \"com/epam/deltix/dt/DateTime\", \"implementation\" : \"com/epam/deltix/dt/Utils\",\n"
+            + "    \"box\" : \"com/epam/deltix/dt/DateTime com/epam/deltix/dt/DateTime.create(J)\",\n"
+            + "    \"unbox\" : \"J com/epam/deltix/dt/DateTime.getLong(Lcom/epam/deltix/dt/DateTime;)\",\n"
+            + "    \"boxArray\" : \"[Lcom/epam/deltix/dt/DateTime; com/epam/deltix/dt/DateTime.fromLongArray([J)\",\n"
+            + "    \"unboxArray\" : \"[J com/epam/deltix/dt/DateTime.toLongArray([Lcom/epam/deltix/dt/DateTime;)\" },\n"
+            + "  { \"name\" : \"com/epam/deltix/vtype/ValueType64\", \"implementation\" : \"com/epam/deltix/vtype/ValueType64Utils\",\n"
+            + "    \"box\" : \"com/epam/deltix/vtype/ValueType64 com/epam/deltix/vtype/ValueType64.fromValue(J)\",\n"
+            + "    \"unbox\" : \"J com/epam/deltix/vtype/ValueType64.getValue(Lcom/epam/deltix/vtype/ValueType64;)\" }\n"
+            + "] }";
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+
+        File dir = Files.createTempDirectory("vt-mapping-snapshot").toFile();
+        File config = new File(dir, "valuetypes.json");
+        File snapshot = new File(dir, "mapping.snapshot");
+        File broken = new File(dir, "broken.snapshot");
+        Files.write(config.toPath(), CONFIG.getBytes(StandardCharsets.UTF_8));
+        URL location = DateTime.class.getProtectionDomain().getCodeSource().getLocation();
+        try (final URLClassLoader loader = new URLClassLoader(new URL[] { location }, ClassLoader.getSystemClassLoader().getParent())) {
+            final Mapping mapping = MappingReader.parse(config.getPath());
+            mapping.loadClasses(new Mapping.ClassDefLoader() {
+                @Override
+                public void load(ClassDef classDef, String classPath) throws Exception {
+                    try (InputStream in = loader.getResourceAsStream(classPath + ".class")) {
+                        ClassFileTransformer.transformClass(new ClassReader(OfflineTransformer.readFully(in)), classPath, classDef, mapping);
+                    }
+                }
+            }, loader);
+
+            String fingerprint = MappingFingerprint.compute(mapping, loader);
+            MappingSnapshot.write(mapping, fingerprint, snapshot);
+
+            Mapping loaded = MappingReader.parse(config.getPath());
+            assertFalse(MappingSnapshot.read(loaded, fingerprint + "x", snapshot));
+            assertFalse(MappingSnapshot.read(loaded, fingerprint, broken));
+            assertEquals(0, loaded.numLoadedClasses());
+
+            // Snapshot that fails to apply, because no descriptor can be parsed, must not modify the mapping
+            byte[] data = Files.readAllBytes(snapshot.toPath());
+            for (int i = 0; i + 1 < data.length; ++i) {
+                if (')' == data[i] && 'J' == data[i + 1]) {
+                    data[i + 1] = 'Q';
+                }
+            }
+
+            Files.write(broken.toPath(), data);
+            try {
+                MappingSnapshot.read(loaded, fingerprint, broken);
+                fail("Broken snapshot is applied");
+            } catch (RuntimeException e) {
+                // Expected
+            }
+
+            assertEquals(0, loaded.numLoadedClasses());
+            for (int i = 0; i < loaded.numClasses(); ++i) {
+                assertNull(loaded.getMethodMap(loaded.getClassDef(i).getSrcClassPath()));
+            }
+
+            assertTrue(MappingSnapshot.read(loaded, fingerprint, snapshot));
+            assertEquals(2, loaded.numLoadedClasses());
+            for (int i = 0; i < mapping.numClasses(); ++i) {
+                ClassDef expected = mapping.getClassDef(i);
+                ClassDef actual = loaded.getClassDef(i);
+                assertTrue(actual.isInitialized());
+                assertEquals(expected.getSrcClassPath(), actual.getSrcClassPath());
+                assertEquals(expected.getNullValue(), actual.getNullValue());
+                assertMethodsEqual(mapping.getMethodMap(expected.getSrcClassPath()), loaded.getMethodMap(actual.getSrcClassPath()));
+            }
+
+            assertEquals(Long.MIN_VALUE, loaded.getClassDef("com/epam/deltix/dt/DateTime").getNullValue());
+        } finally {
+            snapshot.delete();
+            broken.delete();
+            config.delete();
+            dir.delete();
+        }
+    }
+
+    private static void assertMethodsEqual(MethodMap expected, MethodMap actual) {
+
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        assertTrue(expected.size() > 0);
+        Map<String, MethodDef> methods = new HashMap<>();
+        for (MethodDef m : actual.values()) {
+            methods.put(m.getSrcString(), m);
+        }
+
+        for (MethodDef m : expected.values()) {
+            MethodDef loaded = methods.get(m.getSrcString());
+            assertNotNull(m.getSrcString(), loaded);
+            assertTrue(loaded.isInitialized());
+            assertEquals(m.getNewOwner(), loaded.getNewOwner());
+            assertEquals(m.getNewName(), loaded.getNewName());
+            assertEquals(m.getNewDesc(), loaded.getNewDesc());
+            assertEquals(m.getDebugName(), loaded.getDebugName());
+            assertEquals(m.numArgs, loaded.numArgs);
+            assertArrayEquals(Arrays.copyOf(m.args, m.numArgs), Arrays.copyOf(loaded.args, loaded.numArgs));
+        }
+    }
+}
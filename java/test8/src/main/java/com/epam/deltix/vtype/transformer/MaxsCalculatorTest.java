@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Compares MaxsCalculator with ClassWriter.COMPUTE_MAXS on the agent classes and the test classes that use Value Types
+ */
+public class MaxsCalculatorTest {
+
+    private int numMethods, numStraightLine, numTryCatch, numTableSwitch, numLookupSwitch, numWideLocals;
+
+    @Test
+    public void testSameAsAsm() throws Exception {
+
+        MaxsCalculator calculator = new MaxsCalculator();
+        List<byte[]> classes = new ArrayList<>();
+        readClasses(MaxsCalculator.class, "com/epam/deltix/vtype/", classes);
+        readClasses(com.epam.deltix.vtype.test.OperatorTest.class, "com/epam/deltix/vtype/test/", classes);
+
+        for (byte[] data : classes) {
+            ClassNode classNode = new ClassNode();
+            new ClassReader(data).accept(classNode, 0);
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            classNode.accept(writer);
+            ClassNode expected = new ClassNode();
+            new ClassReader(writer.toByteArray()).accept(expected, 0);
+
+            for (int i = 0; i < classNode.methods.size(); ++i) {
+                org.objectweb.asm.tree.MethodNode method = classNode.methods.get(i);
+                org.objectweb.asm.tree.MethodNode asmMethod = expected.methods.get(i);
+                if (0 == method.instructions.size())
+                    continue;
+
+                String name = classNode.name + '.' + method.name + method.desc;
+                boolean straightLine = countFeatures(method);
+                calculator.compute(method);
+                assertEquals(name, asmMethod.maxStack, method.maxStack);
+                assertEquals(name, asmMethod.maxLocals, method.maxLocals);
+
+                if (straightLine) {
+                    method.maxStack = method.maxLocals = -1;
+                    calculator.computeStraightLine(method);
+                    assertEquals(name, asmMethod.maxStack, method.maxStack);
+                    assertEquals(name, asmMethod.maxLocals, method.maxLocals);
+                }
+            }
+        }
+
+        // Make sure the interesting cases were actually checked
+        assertTrue(numMethods > 1000);
+        assertTrue(numStraightLine > 100);
+        assertTrue(numTryCatch > 0);
+        assertTrue(numTableSwitch > 0);
+        assertTrue(numLookupSwitch > 0);
+        assertTrue(numWideLocals > 0);
+    }
+
+    // Returns true if the method has no branches
+    private boolean countFeatures(org.objectweb.asm.tree.MethodNode method) {
+
+        boolean straightLine = method.tryCatchBlocks.isEmpty();
+        boolean tableSwitch = false, lookupSwitch = false, wideLocals = false;
+        for (AbstractInsnNode insn = method.instructions.getFirst(); null != insn; insn = insn.getNext()) {
+            switch (insn.getType()) {
+                case AbstractInsnNode.JUMP_INSN:
+                    straightLine = false;
+                    break;
+
+                case AbstractInsnNode.TABLESWITCH_INSN:
+                    straightLine = false;
+                    tableSwitch = true;
+                    break;
+
+                case AbstractInsnNode.LOOKUPSWITCH_INSN:
+                    straightLine = false;
+                    lookupSwitch = true;
+                    break;
+
+                case AbstractInsnNode.VAR_INSN:
+                    int opcode = insn.getOpcode();
+                    wideLocals |= LLOAD == opcode || DLOAD == opcode || LSTORE == opcode || DSTORE == opcode;
+                    break;
+            }
+        }
+
+        ++numMethods;
+        numStraightLine += straightLine ? 1 : 0;
+        numTryCatch += method.tryCatchBlocks.isEmpty() ? 0 : 1;
+        numTableSwitch += tableSwitch ? 1 : 0;
+        numLookupSwitch += lookupSwitch ? 1 : 0;
+        numWideLocals += wideLocals ? 1 : 0;
+        return straightLine;
+    }
+
+    // Reads all classes under the given path from the directory or jar the class was loaded from
+    private static void readClasses(Class<?> cls, String path, List<byte[]> classes) throws IOException, URISyntaxException {
+
+        URL location = cls.getProtectionDomain().getCodeSource().getLocation();
+        File file = new File(location.toURI());
+        if (file.isDirectory()) {
+            readClasses(new File(file, path), classes);
+            return;
+        }
+
+        try (ZipFile zip = new ZipFile(file)) {
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                ZipEntry entry = e.nextElement();
+                if (entry.getName().startsWith(path) && entry.getName().endsWith(".class")) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        classes.add(OfflineTransformer.readFully(in));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void readClasses(File dir, List<byte[]> classes) throws IOException {
+
+        File[] files = dir.listFiles();
+        if (null == files)
+            return;
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                readClasses(file, classes);
+            } else if (file.getName().endsWith(".class")) {
+                try (InputStream in = new FileInputStream(file)) {
+                    classes.add(OfflineTransformer.readFully(in));
+                }
+            }
+        }
+    }
+}
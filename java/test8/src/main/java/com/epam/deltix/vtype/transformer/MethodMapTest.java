@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.MethodDef;
+import com.epam.deltix.vtype.mapping.MethodMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MethodMapTest {
+
+    private static MethodDef method(String name, String desc) {
+        return new MethodDef(name, desc, "a/Util", true, name, desc.replace("LValueType;", "J"), name);
+    }
+
+    @Test
+    public void testHashCollisions() {
+
+        // "Aa" and "BB" have the same hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+
+        MethodMap map = new MethodMap();
+        MethodDef m1 = method("Aa", "(LValueType;)J");
+        MethodDef m2 = method("BB", "(LValueType;)J");
+        MethodDef m3 = method("Aa", "(LValueType;LValueType;)J");
+        map.put(m1);
+        map.put(m2);
+        map.put(m3);
+
+        assertEquals(3, map.size());
+        assertSame(m1, map.get("Aa", "(Ljava/lang/Object;)J"));
+        assertSame(m2, map.get("BB", "(Ljava/lang/Object;)J"));
+        assertSame(m3, map.get(new String("Aa"), "(Ljava/lang/Object;Ljava/lang/Object;)J"));
+        assertNull(map.get("Ab", "(Ljava/lang/Object;)J"));
+        assertNull(map.get("Aa", "(J)J"));
+
+        MethodDef m4 = method("BB", "(LValueType;)J");
+        map.put(m4);
+        assertEquals(3, map.size());
+        assertSame(m4, map.get("BB", "(Ljava/lang/Object;)J"));
+    }
+
+    @Test
+    public void testZeroKey() {
+
+        // Both hash codes are 0, so the key of the lookup matches the key of an empty slot
+        assertEquals(0, "".hashCode());
+        assertEquals(0, "(La/fuosmau;)J".hashCode());
+
+        MethodMap map = new MethodMap();
+        assertNull(map.get("", "(La/fuosmau;)J"));
+
+        MethodDef m1 = method("m", "(LValueType;)J");
+        map.put(m1);
+        assertNull(map.get("", "(La/fuosmau;)J"));
+
+        MethodDef m2 = method("", "(La/fuosmau;)J");
+        map.put(m2);
+        assertEquals(2, map.size());
+        assertSame(m2, map.get("", "(La/fuosmau;)J"));
+        assertNull(map.get("", ""));
+        assertSame(m1, map.get("m", "(Ljava/lang/Object;)J"));
+    }
+
+    @Test
+    public void testGrowth() {
+
+        MethodMap map = new MethodMap();
+        for (int i = 0; i < 1000; ++i) {
+            map.put(method("m" + i, "(LValueType;)J"));
+        }
+
+        assertEquals(1000, map.size());
+        assertEquals(1000, map.values().length);
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals("m" + i, map.get("m" + i, "(Ljava/lang/Object;)J").getNewName());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.dt.DateTime;
+import com.epam.deltix.vtype.mapping.ClassDef;
+import com.epam.deltix.vtype.mapping.Mapping;
+import com.epam.deltix.vtype.mapping.MappingReader;
+import com.epam.deltix.vtype.test.OperatorTest;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Methods transformed in parallel must produce the same class files as the sequential transformation
+ */
+public class ParallelMethodsTest {
+
+    private static final String CONFIG = "{ \"logSuccesses\" : false, \"ignoreWarnings\" : [ \"newArray\" ],\n"
+            + "\"autoMethods\" : [\n"
+            + "  \"Ljava/lang/String; java.lang.Object.toString(LValueType;)\",\n"
+            + "  \"[LValueType; java/util/Arrays.copyOf([LValueType;I)\",\n"
+            + "  \"[LValueType; java.util.Arrays.copyOf([LValueType;ILjava/lang/Class;)\",\n"
+            + "  \"[LValueType; java.util.Arrays.copyOfRange([LValueType;II)\",\n"
+            + "  \"Z java/util/Arrays.equals([LValueType;[LValueType;)\" ],\n"
+            + "\"mappings\" : [\n"
+            + "  { \"name\" : \"com/epam/deltix/dt/DateTime\", \"implementation\" : \"com/epam/deltix/dt/Utils\",\n"
+            + "    \"box\" : \"com/epam/deltix/dt/DateTime com/epam/deltix/dt/DateTime.create(J)\",\n"
+            + "    \"unbox\" : \"J com/epam/deltix/dt/DateTime.getLong(Lcom/epam/deltix/dt/DateTime;)\",\n"
+            + "    \"boxArray\" : \"[Lcom/epam/deltix/dt/DateTime; com/epam/deltix/dt/DateTime.fromLongArray([J)\",\n"
+            + "    \"unboxArray\" : \"[J com/epam/deltix/dt/DateTime.toLongArray([Lcom/epam/deltix/dt/DateTime;)\" },\n"
+            + "  { \"name\" : \"com/epam/deltix/vtype/ValueType64\", \"implementation\" : \"com/epam/deltix/vtype/ValueType64Utils\",\n"
+            + "    \"box\" : \"com/epam/deltix/vtype/ValueType64 com/epam/deltix/vtype/ValueType64.fromValue(J)\",\n"
+            + "    \"unbox\" : \"J com/epam/deltix/vtype/ValueType64.getValue(Lcom/epam/deltix/vtype/ValueType64;)\" }\n"
+            + "] }";
+
+    private int numTransformed, numWithVtSignature;
+
+    @Test
+    public void testSameAsSequential() throws Exception {
+
+        File config = File.createTempFile("vt-parallel", ".json");
+        Files.write(config.toPath(), CONFIG.getBytes(StandardCharsets.UTF_8));
+        URL location = DateTime.class.getProtectionDomain().getCodeSource().getLocation();
+        try (final URLClassLoader loader = new URLClassLoader(new URL[] { location }, ClassLoader.getSystemClassLoader().getParent())) {
+            final Mapping mapping = MappingReader.parse(config.getPath());
+            mapping.loadClasses(new Mapping.ClassDefLoader() {
+                @Override
+                public void load(ClassDef classDef, String classPath) throws Exception {
+                    try (InputStream in = loader.getResourceAsStream(classPath + ".class")) {
+                        ClassFileTransformer.transformClass(new ClassReader(OfflineTransformer.readFully(in)), classPath, classDef, mapping);
+                    }
+                }
+            }, loader);
+
+            File dir = new File(new File(OperatorTest.class.getProtectionDomain().getCodeSource().getLocation().toURI()),
+                    "com/epam/deltix/vtype/test");
+            File[] files = dir.listFiles();
+            assertTrue(null != files);
+            for (File file : files) {
+                if (file.getName().endsWith(".class")) {
+                    try (InputStream in = new FileInputStream(file)) {
+                        compare(OfflineTransformer.readFully(in), mapping);
+                    }
+                }
+            }
+        } finally {
+            config.delete();
+        }
+
+        assertTrue(numTransformed > 10);
+        // Methods with Value Types in the signature count towards the threshold
+        assertTrue(numWithVtSignature > 0);
+    }
+
+    private void compare(byte[] data, Mapping mapping) {
+
+        ClassReader cr = new ClassReader(data);
+        String className = cr.getClassName();
+        QuickScanClassVisitor scanResult = ClassFileTransformer.quickScan(cr, null, mapping);
+        if (!ClassFileTransformer.mayUseValueTypes(scanResult, mapping))
+            return;
+
+        mapping.parallelMethodsThreshold = 0;
+        byte[] sequential = transform(cr, className, mapping, scanResult);
+        mapping.parallelMethodsThreshold = 1;
+        byte[] parallel = transform(cr, className, mapping, scanResult);
+        if (null == sequential) {
+            assertNull(className, parallel);
+            return;
+        }
+
+        assertArrayEquals(className, sequential, parallel);
+        ++numTransformed;
+        numWithVtSignature += hasVtSignatureMethod(scanResult) ? 1 : 0;
+    }
+
+    /**
+     * Parallel transformation reserves method headers before the method bodies are written, so the constant pool
+     * order is different. Class file is rewritten with a new constant pool, built in the order of the class contents
+     */
+    private static byte[] transform(ClassReader cr, String className, Mapping mapping, QuickScanClassVisitor scanResult) {
+
+        byte[] result = ClassFileTransformer.transformClass(cr, className, null, mapping, null, scanResult);
+        if (null == result)
+            return null;
+
+        ClassWriter cw = new ClassWriter(0);
+        new ClassReader(result).accept(cw, 0);
+        return cw.toByteArray();
+    }
+
+    private static boolean hasVtSignatureMethod(QuickScanClassVisitor scanResult) {
+
+        for (String method : scanResult.getTransformedMethods()) {
+            if (method.contains("Lcom/epam/deltix/dt/DateTime;") || method.contains("Lcom/epam/deltix/vtype/ValueType64;"))
+                return true;
+        }
+
+        return false;
+    }
+}
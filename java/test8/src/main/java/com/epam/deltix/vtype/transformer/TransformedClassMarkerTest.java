@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransformedClassMarkerTest {
+
+    @Test
+    public void testIsMarked() throws IOException {
+
+        assertTrue(TransformedClassMarker.isMarked(classFile(true)));
+        // Attribute name alone doesn't mark the class
+        assertFalse(TransformedClassMarker.isMarked(classFile(false)));
+
+        byte[] marked = classFile(true);
+        assertFalse(TransformedClassMarker.isMarked(Arrays.copyOf(marked, marked.length - 6)));
+        assertFalse(TransformedClassMarker.isMarked(Arrays.copyOf(marked, 20)));
+        assertFalse(TransformedClassMarker.isMarked(new byte[0]));
+
+        try (InputStream in = getClass().getResourceAsStream(getClass().getSimpleName() + ".class")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[0x1000];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+
+            assertFalse(TransformedClassMarker.isMarked(out.toByteArray()));
+        }
+    }
+
+    // Minimal class file with a field, optionally marked
+    private static byte[] classFile(boolean marked) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+
+        out.writeShort(8);
+        out.writeByte(1);
+        out.writeUTF("foo/A");
+        out.writeByte(7);
+        out.writeShort(1);
+        out.writeByte(1);
+        out.writeUTF("java/lang/Object");
+        out.writeByte(7);
+        out.writeShort(3);
+        out.writeByte(1);
+        out.writeUTF("x");
+        out.writeByte(1);
+        out.writeUTF("J");
+        out.writeByte(1);
+        out.writeUTF(TransformedClassMarker.NAME);
+
+        out.writeShort(0x21);
+        out.writeShort(2);
+        out.writeShort(4);
+        out.writeShort(0);
+
+        out.writeShort(1);
+        out.writeShort(0);
+        out.writeShort(5);
+        out.writeShort(6);
+        out.writeShort(0);
+
+        out.writeShort(0);
+
+        out.writeShort(marked ? 1 : 0);
+        if (marked) {
+            out.writeShort(7);
+            out.writeInt(0);
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 EPAM Systems, Inc
+ *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.epam.deltix.vtype.transformer;
+
+import com.epam.deltix.vtype.mapping.Mapping;
+import com.epam.deltix.vtype.mapping.MappingReader;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UsageIndexTest {
+
+    @Test
+    public void testWriteAndLoad() throws IOException {
+
+        File dir = Files.createTempDirectory("vt-usage-index").toFile();
+        File config = new File(dir, "valuetypes.json");
+        File indexFile = new File(dir, "usage.idx");
+        String json = "{ \"usageIndex\" : \"" + indexFile.getPath().replace("\\", "\\\\") + "\", \"mappings\" : [] }";
+        Files.write(config.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        try {
+            Mapping mapping = MappingReader.parse(config.getPath());
+            ClassLoader loader = getClass().getClassLoader();
+            assertNull(UsageIndex.load(mapping, loader));
+
+            byte[] a = { 1, 2, 3, 4 };
+            byte[] b = { 5, 6, 7 };
+            UsageIndex.Builder builder = new UsageIndex.Builder();
+            builder.addUnchanged("foo/A", a);
+            builder.addUnchanged("foo/B", b);
+            builder.write(indexFile, MappingFingerprint.compute(mapping, loader));
+
+            UsageIndex index = UsageIndex.load(mapping, loader);
+            assertEquals(2, index.size());
+            assertTrue(index.isUnchanged("foo/A", a));
+            assertTrue(index.isUnchanged("foo/B", b.clone()));
+            assertFalse(index.isUnchanged("foo/A", b));
+            assertFalse(index.isUnchanged("foo/A", new byte[] { 1, 2, 3, 5 }));
+            assertFalse(index.isUnchanged("foo/C", a));
+
+            // Config change invalidates the index
+            Files.write(config.toPath(), json.replace("[]", "[ ]").getBytes(StandardCharsets.UTF_8));
+            assertNull(UsageIndex.load(mapping, loader));
+        } finally {
+            indexFile.delete();
+            config.delete();
+            dir.delete();
+        }
+    }
+}
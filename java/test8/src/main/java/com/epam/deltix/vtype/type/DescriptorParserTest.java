@@ -27,6 +27,8 @@ public class DescriptorParserTest {
         assertEquals(TypeId.I32, (int) DescriptorParser.parseType("I", 0, null));
         assertEquals(TypeId.I32, (int) DescriptorParser.parseType("Z", 0, null));
         assertEquals(TypeId.OBJ_REF, (int) DescriptorParser.parseType("Lcom/epam/deltix/dt/DateTime;", 0, null));
+        assertEquals(TypeId.vtValueFromIndex(TypeId.VT_WILDCARD_INDEX), (int) DescriptorParser.parseType("(LValueType;)V", 1, null));
+        assertEquals(TypeId.OBJ_REF, (int) DescriptorParser.parseType("LValueTypes;", 0, null));
     }
 
     @Test